@@ -0,0 +1,190 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static edu.amherst.acdc.trellis.webac.ExecutionStrategy.boundedPool;
+import static edu.amherst.acdc.trellis.webac.ExecutionStrategy.sequential;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.Session;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.Triple;
+import org.apache.commons.rdf.simple.SimpleRDF;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks for the WebACService authorization paths, run against an in-memory repository.
+ *
+ * <p>The repository is a single chain of containers, {@code depth} levels deep, with an ACL
+ * on the root that holds {@code aclSize} authorizations. Only the last authorization matches
+ * the session agent, either directly or, when {@code groupCount} is non-zero, through the
+ * last of the agent's groups. The {@code caching} parameter enables no caches, only the ACL,
+ * resolution and decision caches, or those along with the group, administrator and negative
+ * caches; the execution strategy is varied separately. Run with {@code ./gradlew jmh}; the gc
+ * profiler reports the allocation rate.</p>
+ *
+ * @author agent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WebACServiceBenchmark {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    @Param({"1", "10"})
+    private int depth;
+
+    @Param({"10", "200"})
+    private int aclSize;
+
+    @Param({"0", "20"})
+    private int groupCount;
+
+    @Param({"false", "true"})
+    private boolean delegation;
+
+    @Param({"all", "acl", "none"})
+    private String caching;
+
+    @Param({"sequential", "pool"})
+    private String execution;
+
+    @Param({"false", "true"})
+    private boolean bulk;
+
+    private final IRI agent = rdf.createIRI("info:user/agent");
+
+    private final IRI delegator = rdf.createIRI("info:user/delegator");
+
+    private final IRI acl = rdf.createIRI("info:trellis/acl");
+
+    private ExecutionStrategy executor;
+
+    private WebACService service;
+
+    private Session session;
+
+    private IRI leaf;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final InMemoryRepository repository = new InMemoryRepository();
+        final IRI root = rdf.createIRI("info:trellis");
+        repository.put(root, null, acl);
+        repository.put(acl, root, null);
+
+        IRI parent = root;
+        for (int i = 0; i < depth; ++i) {
+            final IRI container = rdf.createIRI(parent.getIRIString() + "/c" + i);
+            repository.put(container, parent, null);
+            parent = container;
+        }
+        leaf = rdf.createIRI(parent.getIRIString() + "/resource");
+        repository.put(leaf, parent, null);
+
+        final List<IRI> groups = new ArrayList<>();
+        for (int i = 0; i < groupCount; ++i) {
+            groups.add(rdf.createIRI("info:group/g" + i));
+        }
+        repository.setGroups(agent, groups.toArray(new IRI[0]));
+
+        for (int i = 0; i < aclSize; ++i) {
+            final IRI auth = rdf.createIRI(acl.getIRIString() + "/auth" + i);
+            final boolean last = i == aclSize - 1;
+            final List<Triple> triples = new ArrayList<>();
+            triples.add(rdf.createTriple(auth, ACL.accessTo, root));
+            triples.add(rdf.createTriple(auth, ACL.mode, ACL.Read));
+            if (last && groupCount > 0) {
+                triples.add(rdf.createTriple(auth, ACL.agentGroup, groups.get(groupCount - 1)));
+            } else {
+                triples.add(rdf.createTriple(auth, ACL.agent, last ? agent : rdf.createIRI("info:user/u" + i)));
+            }
+            if (last && delegation) {
+                triples.add(rdf.createTriple(auth, ACL.agent, delegator));
+            }
+            repository.putAuthorization(acl, auth, triples.toArray(new Triple[0]));
+        }
+
+        final long size = "none".equals(caching) ? 0L : 10000L;
+        final long agentSize = "all".equals(caching) ? 10000L : 0L;
+        executor = "pool".equals(execution) ? boundedPool(4, 1024, 8) : sequential();
+        service = WebACService.builder()
+            .cache(new AuthorizationCache(size, 10, MINUTES))
+            .resolutions(new AclResolutionCache(size, 10, MINUTES))
+            .decisions(new DecisionCache(size, 10, MINUTES))
+            .groups(new GroupCache(agentSize, 10, MINUTES))
+            .admins(new AdminCache(agentSize, 10, MINUTES))
+            .negatives(new NegativeCache(agentSize, 10, MINUTES))
+            .executor(executor)
+            .build();
+        service.bind(bulk ? repository.getBulkResourceService() : repository.getResourceService());
+        service.bind(repository.getAgentService());
+        session = repository.session(agent, delegation ? delegator : null);
+
+        if (!service.canRead(session, leaf)) {
+            throw new IllegalStateException("Benchmark fixture does not grant read access");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Benchmark
+    public Boolean anyMatch() {
+        return service.anyMatch(session, leaf, ACL.Read::equals);
+    }
+
+    @Benchmark
+    public Boolean anyMatchDenied() {
+        return service.anyMatch(session, leaf, ACL.Write::equals);
+    }
+
+    @Benchmark
+    public Optional<IRI> findAclFor() {
+        return service.findAclFor(session, leaf);
+    }
+
+    @Benchmark
+    public Optional<Resource> findAncestorWithAccessControl() {
+        return service.findAncestorWithAccessControl(session, leaf);
+    }
+
+    @Benchmark
+    public long getAuthorizations() {
+        return service.getAuthorizations(session, acl).count();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A listener for changes that affect authorization decisions.
+ *
+ * <p>Components that observe resource writes or agent directory updates can notify
+ * implementations of this interface so that any cached authorization data stays
+ * consistent with the backend.</p>
+ *
+ * @author agent
+ */
+public interface AccessControlListener {
+
+    /**
+     * Notify the listener that a resource was created, modified or deleted.
+     *
+     * <p>This is relevant for ACL resources, authorizations inside an ACL and any
+     * resource that gains or loses an ACL.</p>
+     *
+     * @param identifier the identifier of the modified resource
+     */
+    void invalidate(IRI identifier);
+
+    /**
+     * Notify the listener that the group membership of an agent has changed.
+     *
+     * <p>If the agent is itself a group, this also applies to every member of that group.</p>
+     *
+     * @param agent the agent or group identifier
+     */
+    void invalidateAgent(IRI agent);
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * The standard {@code acl:} access modes.
+ *
+ * <p>The mode IRIs read from authorizations are interned to the vocabulary constants, so that
+ * comparisons against {@code ACL.Read} and the like usually succeed on identity. A set of modes
+ * can also be held as a bitmask, with one bit per mode in declaration order.</p>
+ *
+ * @author agent
+ */
+public enum AccessMode {
+
+    READ(ACL.Read),
+    WRITE(ACL.Write),
+    APPEND(ACL.Append),
+    CONTROL(ACL.Control);
+
+    private static final AccessMode[] VALUES = values();
+
+    private static final Map<IRI, AccessMode> MODES = new HashMap<>();
+
+    static {
+        for (final AccessMode mode : VALUES) {
+            MODES.put(mode.iri, mode);
+        }
+    }
+
+    private final IRI iri;
+
+    AccessMode(final IRI iri) {
+        this.iri = iri;
+    }
+
+    /**
+     * @return the acl: IRI of this mode
+     */
+    public IRI getIRI() {
+        return iri;
+    }
+
+    /**
+     * Find the access mode for an IRI.
+     *
+     * @param iri the mode IRI
+     * @return the access mode, if the IRI is one of the standard acl: modes
+     */
+    public static Optional<AccessMode> of(final IRI iri) {
+        return Optional.ofNullable(MODES.get(iri));
+    }
+
+    /**
+     * Intern a mode IRI.
+     *
+     * @param iri the mode IRI
+     * @return the vocabulary constant for a standard mode, otherwise the IRI itself
+     */
+    static IRI intern(final IRI iri) {
+        final AccessMode mode = MODES.get(iri);
+        return mode == null ? iri : mode.iri;
+    }
+
+    int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Encode the standard modes among a collection of IRIs as a bitmask.
+     *
+     * @param iris the mode IRIs
+     * @return the bitmask
+     */
+    static int toMask(final Collection<IRI> iris) {
+        int mask = 0;
+        for (final IRI iri : iris) {
+            final AccessMode mode = MODES.get(iri);
+            if (mode != null) {
+                mask |= mode.bit();
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Decode a bitmask.
+     *
+     * @param mask the bitmask
+     * @return the access modes
+     */
+    static EnumSet<AccessMode> fromMask(final int mask) {
+        final EnumSet<AccessMode> modes = EnumSet.noneOf(AccessMode.class);
+        for (final AccessMode mode : VALUES) {
+            if ((mask & mode.bit()) != 0) {
+                modes.add(mode);
+            }
+        }
+        return modes;
+    }
+}
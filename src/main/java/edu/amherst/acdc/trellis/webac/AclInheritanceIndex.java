@@ -0,0 +1,462 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.ResourceService;
+import edu.amherst.acdc.trellis.spi.Session;
+import org.apache.commons.rdf.api.IRI;
+import org.slf4j.Logger;
+
+/**
+ * An in-memory index of ACL inheritance.
+ *
+ * <p>The index is a trie of IRI path segments, in which each node records whether the
+ * resource at that path carries its own ACL. Finding the ACL that governs a resource is
+ * then a walk down the trie and back up to the nearest node with an ACL, without any
+ * calls to the ResourceService. The segments of containers, ACL identifiers and type lists
+ * are shared between nodes and dropped once no node uses them, and a node keeps its first
+ * few children in a small array, so the memory cost per resource is small.</p>
+ *
+ * <p>The index can be built up front from a ResourceService and is then kept current
+ * from change notifications: {@link #put} for created or modified resources,
+ * {@link #remove} for deleted ones and {@link #invalidate} for a change whose effect is
+ * not known. A resource that is not in the index, or that has an invalidated resource
+ * on its path, is not answered, and the caller falls back to the ResourceService.
+ * Resources read while answering a request are written back with the {@link #stamp}
+ * taken before they were read, and are dropped if the index changed in the meantime.
+ * The index assumes that the parent of each resource is the IRI with the last path
+ * segment removed; resources for which that is not true are never indexed.</p>
+ *
+ * @author agent
+ */
+public class AclInheritanceIndex {
+
+    private static final Logger LOGGER = getLogger(AclInheritanceIndex.class);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Node root = new Node("", null, false);
+
+    private final Interner<String> segments = new Interner<>();
+
+    private final Interner<IRI> iris = new Interner<>();
+
+    private final Interner<List<IRI>> typeLists = new Interner<>();
+
+    private static final long UNSTAMPED = -1L;
+
+    private long size;
+
+    private long version;
+
+    /**
+     * Index every resource under a root, following the children of each container.
+     *
+     * @param service the resource service
+     * @param session the session used to read the resources
+     * @param identifier the identifier of the root resource
+     * @return the number of resources indexed
+     */
+    public long build(final ResourceService service, final Session session, final IRI identifier) {
+        requireNonNull(service, "A non-null ResourceService must be provided!");
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        long count = 0L;
+        final Deque<IRI> pending = new ArrayDeque<>();
+        pending.push(identifier);
+        while (!pending.isEmpty()) {
+            final Optional<Resource> resource = service.find(session, pending.pop());
+            if (resource.isPresent()) {
+                put(resource.get());
+                resource.get().getChildren().forEach(pending::push);
+                count += 1;
+            }
+        }
+        LOGGER.info("Indexed ACL inheritance for {} resources under {}", count, identifier);
+        return count;
+    }
+
+    /**
+     * Record a created or modified resource.
+     *
+     * @param resource the resource
+     */
+    public void put(final Resource resource) {
+        requireNonNull(resource, "A non-null resource must be provided!");
+        put(resource, UNSTAMPED);
+    }
+
+    /**
+     * Record a resource that was read after a {@link #stamp} was taken.
+     *
+     * <p>The resource is not recorded if anything was removed or invalidated since then,
+     * as it may have been read before that change.</p>
+     *
+     * @param resource the resource
+     * @param stamp the stamp taken before the resource was read
+     */
+    void put(final Resource resource, final long stamp) {
+        final String path = resource.getIdentifier().getIRIString();
+        final Optional<IRI> parent = resource.getParent();
+        if (parent.isPresent() && !isParentPath(parent.get().getIRIString(), path)) {
+            LOGGER.debug("Not indexing {}: its parent is not a path prefix", path);
+            if (stamp == UNSTAMPED) {
+                invalidate(resource.getIdentifier());
+            }
+            return;
+        }
+        final Optional<IRI> acl = resource.getAccessControl();
+        final List<IRI> types = acl.isPresent() ? resource.getTypes().collect(toList()) : null;
+
+        lock.writeLock().lock();
+        try {
+            if (stamp != UNSTAMPED && stamp != version) {
+                return;
+            }
+            final Node node = getOrCreate(path);
+            release(node.acl);
+            node.known = true;
+            node.root = !parent.isPresent();
+            node.acl = acl.map(id -> new EffectiveAcl(resource.getIdentifier(), typeLists.acquire(types),
+                        iris.acquire(id))).orElse(null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a deleted resource and everything beneath it.
+     *
+     * @param identifier the identifier of the deleted resource
+     */
+    public void remove(final IRI identifier) {
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        lock.writeLock().lock();
+        try {
+            final Node node = find(identifier.getIRIString());
+            if (node != null && node.parent != null) {
+                node.parent.removeChild(node);
+                size -= release(node);
+            }
+            version += 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Mark a resource as changed in an unknown way; it is not answered for until it is put again.
+     *
+     * @param identifier the identifier of the changed resource
+     */
+    public void invalidate(final IRI identifier) {
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        lock.writeLock().lock();
+        try {
+            final Node node = find(identifier.getIRIString());
+            if (node != null) {
+                release(node.acl);
+                node.known = false;
+                node.acl = null;
+            }
+            version += 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove everything from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children = null;
+            root.table = null;
+            segments.clear();
+            iris.clear();
+            typeLists.clear();
+            size = 0L;
+            version += 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of nodes in the index
+     */
+    public long size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of distinct segments, ACL identifiers and type lists shared between nodes
+     */
+    int getSharedCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size() + iris.size() + typeLists.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a stamp to pass to {@link #put(Resource, long)} for resources read after this call
+     */
+    long stamp() {
+        lock.readLock().lock();
+        try {
+            return version;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the ACL that governs a resource.
+     *
+     * @param identifier the resource identifier
+     * @return the resolution, which is unknown if the index cannot answer for this resource
+     */
+    Resolution resolve(final IRI identifier) {
+        lock.readLock().lock();
+        try {
+            for (Node node = find(identifier.getIRIString()); node != null && node.known; node = node.parent) {
+                if (node.acl != null) {
+                    return new Resolution(node.acl);
+                } else if (node.root) {
+                    return Resolution.NONE;
+                }
+            }
+            return Resolution.UNKNOWN;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Node find(final String path) {
+        Node node = root;
+        for (final String segment : path.split("/", -1)) {
+            node = node.getChild(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private Node getOrCreate(final String path) {
+        final String[] parts = path.split("/", -1);
+        Node node = root;
+        for (int i = 0; i < parts.length; ++i) {
+            Node child = node.getChild(parts[i]);
+            if (child == null) {
+                // Only container segments recur across paths; a leaf segment is usually unique
+                if (!node.shared && node != root) {
+                    node.segment = segments.acquire(node.segment);
+                    node.shared = true;
+                }
+                final boolean shared = i < parts.length - 1;
+                child = new Node(shared ? segments.acquire(parts[i]) : parts[i], node, shared);
+                node.addChild(child);
+                size += 1;
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private long release(final Node node) {
+        long total = 1L;
+        release(node.acl);
+        if (node.shared) {
+            segments.release(node.segment);
+        }
+        if (node.table != null) {
+            for (final Node child : node.table.values()) {
+                total += release(child);
+            }
+        } else if (node.children != null) {
+            for (final Node child : node.children) {
+                total += release(child);
+            }
+        }
+        return total;
+    }
+
+    private void release(final EffectiveAcl acl) {
+        if (acl != null) {
+            typeLists.release(acl.getAncestorTypes());
+            iris.release(acl.getAcl());
+        }
+    }
+
+    private static boolean isParentPath(final String parent, final String path) {
+        return path.length() > parent.length() + 1 && path.startsWith(parent) &&
+            path.charAt(parent.length()) == '/' && path.indexOf('/', parent.length() + 1) < 0;
+    }
+
+    /**
+     * The answer of the index for one resource.
+     */
+    static final class Resolution {
+
+        static final Resolution UNKNOWN = new Resolution(null);
+
+        static final Resolution NONE = new Resolution(null);
+
+        private final EffectiveAcl acl;
+
+        private Resolution(final EffectiveAcl acl) {
+            this.acl = acl;
+        }
+
+        /**
+         * @return whether the index could answer for the resource
+         */
+        boolean isKnown() {
+            return this != UNKNOWN;
+        }
+
+        /**
+         * @return the effective ACL, or an empty value if no ACL governs the resource
+         */
+        Optional<EffectiveAcl> getAcl() {
+            return Optional.ofNullable(acl);
+        }
+    }
+
+    private static final class Node {
+        private static final int MAX_ARRAY_SIZE = 8;
+
+        private final Node parent;
+        private String segment;
+        private boolean shared;
+        private Node[] children;
+        private Map<String, Node> table;
+        private boolean known;
+        private boolean root;
+        private EffectiveAcl acl;
+
+        private Node(final String segment, final Node parent, final boolean shared) {
+            this.segment = segment;
+            this.parent = parent;
+            this.shared = shared;
+        }
+
+        private Node getChild(final String key) {
+            if (table != null) {
+                return table.get(key);
+            } else if (children != null) {
+                for (final Node child : children) {
+                    if (child.segment.equals(key)) {
+                        return child;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void addChild(final Node child) {
+            if (table != null) {
+                table.put(child.segment, child);
+            } else if (children == null) {
+                children = new Node[] { child };
+            } else if (children.length < MAX_ARRAY_SIZE) {
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+            } else {
+                table = new HashMap<>(MAX_ARRAY_SIZE * 4);
+                for (final Node node : children) {
+                    table.put(node.segment, node);
+                }
+                table.put(child.segment, child);
+                children = null;
+            }
+        }
+
+        private void removeChild(final Node child) {
+            if (table != null) {
+                table.remove(child.segment);
+            } else if (children != null) {
+                for (int i = 0; i < children.length; ++i) {
+                    if (children[i] == child) {
+                        final Node[] remaining = new Node[children.length - 1];
+                        System.arraycopy(children, 0, remaining, 0, i);
+                        System.arraycopy(children, i + 1, remaining, i, remaining.length - i);
+                        children = remaining.length == 0 ? null : remaining;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Interner<T> {
+        private final Map<T, Shared<T>> values = new HashMap<>();
+
+        private T acquire(final T value) {
+            final Shared<T> shared = values.computeIfAbsent(value, Shared::new);
+            shared.references += 1;
+            return shared.value;
+        }
+
+        private void release(final T value) {
+            final Shared<T> shared = values.get(value);
+            if (shared != null && --shared.references == 0) {
+                values.remove(value);
+            }
+        }
+
+        private int size() {
+            return values.size();
+        }
+
+        private void clear() {
+            values.clear();
+        }
+    }
+
+    private static final class Shared<T> {
+        private final T value;
+        private int references;
+
+        private Shared(final T value) {
+            this.value = value;
+        }
+    }
+}
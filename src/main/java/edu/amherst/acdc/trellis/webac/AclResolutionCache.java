@@ -0,0 +1,106 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A bounded cache that maps a resource identifier to the ACL that governs it.
+ *
+ * <p>Every resource visited while walking up the tree is recorded, so siblings and
+ * descendants of an already-resolved resource reuse the same entries rather than
+ * repeating the ancestor walk.</p>
+ *
+ * @author agent
+ */
+public class AclResolutionCache {
+
+    private final ExpiringCache<IRI, EffectiveAcl> cache;
+
+    /**
+     * Create a resolution cache.
+     *
+     * @param maxSize the maximum number of resources to hold
+     * @param ttl the time-to-live of each entry
+     * @param unit the unit of the ttl value
+     */
+    public AclResolutionCache(final long maxSize, final long ttl, final TimeUnit unit) {
+        this.cache = new ExpiringCache<>(maxSize, ttl, unit);
+    }
+
+    /**
+     * Drop the resolution for the given resource, for any resource it governs and for
+     * every resource beneath it in the IRI hierarchy.
+     *
+     * <p>This should be called when an ACL is attached to, or removed from, a resource.</p>
+     *
+     * @param identifier the identifier of the modified resource
+     */
+    public void invalidate(final IRI identifier) {
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        final String prefix = identifier.getIRIString() + "/";
+        cache.invalidateIf(id -> id.equals(identifier) || id.getIRIString().startsWith(prefix),
+                acl -> acl.getAncestor().equals(identifier) || acl.getAcl().equals(identifier));
+    }
+
+    /**
+     * Drop all cached resolutions.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the number of cached resolutions
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of lookups that were served from the cache
+     */
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * @return the number of lookups that were not found in the cache
+     */
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    EffectiveAcl get(final IRI identifier) {
+        return cache.getIfPresent(identifier);
+    }
+
+    void put(final IRI identifier, final EffectiveAcl acl, final long generation, final long stamp) {
+        cache.put(identifier, acl, generation, stamp);
+    }
+
+    long stamp() {
+        return cache.stamp();
+    }
+
+    void advance(final long generation) {
+        cache.advance(generation);
+    }
+}
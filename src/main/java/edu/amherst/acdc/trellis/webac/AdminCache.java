@@ -0,0 +1,149 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A bounded cache of administrator status, keyed by agent.
+ *
+ * <p>Both answers are cached: agents found to be administrators are held for the positive
+ * time-to-live and all other agents, which are by far the common case, for the negative
+ * time-to-live. A shorter negative ttl limits how long a newly promoted administrator
+ * waits; a shorter positive ttl limits how long a demoted one keeps access.</p>
+ *
+ * @author agent
+ */
+public class AdminCache {
+
+    private final ExpiringCache<IRI, Boolean> admins;
+
+    private final ExpiringCache<IRI, Boolean> others;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create an admin cache that holds both answers for the same time.
+     *
+     * @param maxSize the maximum number of agents to hold for each answer
+     * @param ttl the time-to-live of each cached answer
+     * @param unit the unit of the ttl value
+     */
+    public AdminCache(final long maxSize, final long ttl, final TimeUnit unit) {
+        this(maxSize, ttl, ttl, unit);
+    }
+
+    /**
+     * Create an admin cache.
+     *
+     * @param maxSize the maximum number of agents to hold for each answer
+     * @param ttl the time-to-live of a cached positive answer
+     * @param negativeTtl the time-to-live of a cached negative answer
+     * @param unit the unit of the ttl values
+     */
+    public AdminCache(final long maxSize, final long ttl, final long negativeTtl, final TimeUnit unit) {
+        this.admins = new ExpiringCache<>(maxSize, ttl, unit);
+        this.others = new ExpiringCache<>(maxSize, negativeTtl, unit);
+    }
+
+    /**
+     * Drop the cached status of an agent.
+     *
+     * @param agent the agent identifier
+     */
+    public void invalidate(final IRI agent) {
+        requireNonNull(agent, "A non-null agent must be provided!");
+        admins.invalidate(agent);
+        others.invalidate(agent);
+    }
+
+    /**
+     * Drop all cached answers.
+     */
+    public void invalidateAll() {
+        admins.invalidateAll();
+        others.invalidateAll();
+    }
+
+    /**
+     * @return the number of agents whose status is cached
+     */
+    public long size() {
+        return admins.size() + others.size();
+    }
+
+    /**
+     * @return the number of checks that were served from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of checks that required an AgentService call
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Determine whether an agent is an administrator, consulting the loader if necessary.
+     *
+     * @param agent the agent
+     * @param loader the backend check
+     * @param generation the generation of the AgentService binding
+     * @return true if the agent is an administrator
+     */
+    boolean isAdmin(final IRI agent, final Predicate<IRI> loader, final long generation) {
+        if (agent == null) {
+            return loader.test(agent);
+        }
+        if (admins.getIfPresent(agent) != null) {
+            hits.increment();
+            return true;
+        }
+        if (others.getIfPresent(agent) != null) {
+            hits.increment();
+            return false;
+        }
+        misses.increment();
+        final long adminStamp = admins.stamp();
+        final long otherStamp = others.stamp();
+        final boolean admin = loader.test(agent);
+        // The answer just loaded supersedes any opposite one cached concurrently
+        if (admin) {
+            others.remove(agent);
+            admins.put(agent, Boolean.TRUE, generation, adminStamp);
+        } else {
+            admins.remove(agent);
+            others.put(agent, Boolean.FALSE, generation, otherStamp);
+        }
+        return admin;
+    }
+
+    void advance(final long generation) {
+        admins.advance(generation);
+        others.advance(generation);
+    }
+}
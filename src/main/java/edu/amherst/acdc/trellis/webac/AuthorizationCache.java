@@ -0,0 +1,133 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A bounded cache of compiled ACLs, keyed by the identifier of the ACL resource.
+ *
+ * <p>Entries expire after a fixed time-to-live; they can also be dropped explicitly
+ * whenever an ACL, or any authorization inside it, is modified.</p>
+ *
+ * @author agent
+ */
+public class AuthorizationCache {
+
+    private final ExpiringCache<IRI, CompiledAcl> cache;
+
+    /**
+     * Create an authorization cache.
+     *
+     * @param maxSize the maximum number of ACLs to hold
+     * @param ttl the time-to-live of each cached ACL
+     * @param unit the unit of the ttl value
+     */
+    public AuthorizationCache(final long maxSize, final long ttl, final TimeUnit unit) {
+        this.cache = new ExpiringCache<>(maxSize, ttl, unit);
+    }
+
+    /**
+     * Drop any cached ACL affected by a change to the given resource.
+     *
+     * <p>The identifier may be that of an ACL resource, of one of its authorizations, or of
+     * a new resource being created inside an ACL container.</p>
+     *
+     * @param identifier the identifier of the modified resource
+     */
+    public void invalidate(final IRI identifier) {
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        // Every container of the identifier is computed once, rather than a prefix for each entry
+        final String child = identifier.getIRIString();
+        final Set<String> containers = new HashSet<>();
+        for (int i = child.indexOf('/'); i >= 0; i = child.indexOf('/', i + 1)) {
+            containers.add(child.substring(0, i));
+        }
+        cache.invalidateIf(acl -> acl.equals(identifier) || containers.contains(acl.getIRIString()),
+                acl -> acl.contains(identifier));
+    }
+
+    /**
+     * Drop all cached ACLs.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the number of cached ACLs
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of lookups that were served from the cache
+     */
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * @return the number of lookups that required loading an ACL
+     */
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * @return the number of ACLs evicted to stay within the size bound
+     */
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    CompiledAcl get(final IRI identifier, final Function<IRI, CompiledAcl> loader, final long generation) {
+        return cache.get(identifier, loader, generation);
+    }
+
+    List<CompiledAcl> getMostRecentlyUsed(final int limit) {
+        return cache.values(limit);
+    }
+
+    boolean isEnabled() {
+        return cache.isEnabled();
+    }
+
+    CompiledAcl getIfPresent(final IRI identifier) {
+        return cache.getIfPresent(identifier);
+    }
+
+    void put(final IRI identifier, final CompiledAcl acl, final long generation, final long stamp) {
+        cache.put(identifier, acl, generation, stamp);
+    }
+
+    long stamp() {
+        return cache.stamp();
+    }
+
+    void advance(final long generation) {
+        cache.advance(generation);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static edu.amherst.acdc.trellis.api.Resource.TripleContext.USER_MANAGED;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.Session;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Triple;
+
+/**
+ * Test a single authorization resource directly against a request.
+ *
+ * <p>This reads the {@code acl:} triples of the resource in one pass, without building
+ * an intermediate graph or {@code Authorization} object, so that an ACL that is not
+ * cached can be evaluated one child at a time and abandoned as soon as access is granted.</p>
+ *
+ * @author agent
+ */
+final class AuthorizationMatcher {
+
+    /**
+     * Determine whether an authorization resource grants a mode to the session agent.
+     *
+     * @param resource the authorization resource
+     * @param session the session
+     * @param agentGroups the groups of the session agent
+     * @param target the resource that carries the ACL
+     * @param predicate a test for the requested mode
+     * @return true if the authorization grants access
+     */
+    static Boolean grants(final Resource resource, final Session session, final Collection<IRI> agentGroups,
+            final EffectiveAcl target, final Predicate<IRI> predicate) {
+        final IRI identifier = resource.getIdentifier();
+        final Optional<IRI> delegatedBy = session.getDelegatedBy();
+        boolean mode = false;
+        boolean agent = false;
+        boolean delegate = !delegatedBy.isPresent();
+        boolean access = false;
+
+        final Iterator<? extends Triple> triples = resource.stream(USER_MANAGED).iterator();
+        while (triples.hasNext()) {
+            final Triple triple = triples.next();
+            if (!identifier.equals(triple.getSubject()) || !(triple.getObject() instanceof IRI)) {
+                continue;
+            }
+            final IRI predicateIRI = triple.getPredicate();
+            final IRI object = (IRI) triple.getObject();
+            if (ACL.mode.equals(predicateIRI)) {
+                mode = mode || predicate.test(object);
+            } else if (ACL.agent.equals(predicateIRI)) {
+                agent = agent || object.equals(session.getAgent());
+                delegate = delegate || object.equals(delegatedBy.get());
+            } else if (ACL.agentGroup.equals(predicateIRI)) {
+                agent = agent || agentGroups.contains(object);
+            } else if (ACL.accessTo.equals(predicateIRI)) {
+                access = access || object.equals(target.getAncestor());
+            } else if (ACL.accessToClass.equals(predicateIRI)) {
+                access = access || target.getAncestorTypes().contains(object);
+            }
+        }
+        return mode && agent && delegate && access;
+    }
+
+    private AuthorizationMatcher() {
+        // prevent instantiation
+    }
+}
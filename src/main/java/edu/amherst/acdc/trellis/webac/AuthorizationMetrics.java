@@ -0,0 +1,73 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+/**
+ * A sink for per-decision authorization metrics.
+ *
+ * <p>The WebAC service reports one {@link AuthorizationTrace} for each access check once
+ * the decision has been made. Implementations are called on the thread that completed
+ * the decision, so they should record the values and return quickly.</p>
+ *
+ * @author agent
+ */
+@FunctionalInterface
+public interface AuthorizationMetrics {
+
+    /**
+     * Record a completed access check.
+     *
+     * @param trace the trace of the decision
+     */
+    void record(AuthorizationTrace trace);
+
+    /**
+     * @return whether this sink records anything; if not, no traces are collected
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * A sink that records nothing.
+     *
+     * @return the no-op sink
+     */
+    static AuthorizationMetrics noop() {
+        return NoopMetrics.INSTANCE;
+    }
+
+    /**
+     * The no-op sink.
+     */
+    final class NoopMetrics implements AuthorizationMetrics {
+        private static final AuthorizationMetrics INSTANCE = new NoopMetrics();
+
+        private NoopMetrics() {
+            // prevent instantiation
+        }
+
+        @Override
+        public void record(final AuthorizationTrace trace) {
+            // no-op
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    }
+}
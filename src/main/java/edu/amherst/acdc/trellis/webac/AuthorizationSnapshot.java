@@ -0,0 +1,269 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.Triple;
+import org.slf4j.Logger;
+
+/**
+ * Reads and writes compiled ACLs in a compact binary form.
+ *
+ * <p>The file starts with a table of every distinct IRI, after which each ACL, its
+ * modification time, its members and its authorizations refer to IRIs by their position
+ * in that table. Files are read through a memory mapping, and every count is checked
+ * against the bytes that remain. An ACL is only written if it has a modification time to
+ * be validated against and if all of its retained triples have IRI objects.</p>
+ *
+ * @author agent
+ */
+final class AuthorizationSnapshot {
+
+    private static final Logger LOGGER = getLogger(AuthorizationSnapshot.class);
+
+    private static final int MAGIC = 0x57414353;
+
+    private static final int VERSION = 3;
+
+    // The fewest bytes that each kind of record can take up
+    private static final int IRI_SIZE = 4;
+
+    private static final int ACL_SIZE = 24;
+
+    private static final int AUTHORIZATION_SIZE = 28;
+
+    private static final int TRIPLE_SIZE = 8;
+
+    /**
+     * Write compiled ACLs to a file, replacing it atomically.
+     *
+     * @param acls the compiled ACLs
+     * @param path the file
+     * @return the number of ACLs written
+     */
+    static int write(final List<CompiledAcl> acls, final Path path) {
+        final List<CompiledAcl> eligible = new ArrayList<>();
+        final Map<IRI, Integer> table = new HashMap<>();
+        final List<IRI> iris = new ArrayList<>();
+        for (final CompiledAcl acl : acls) {
+            if (isEligible(acl)) {
+                eligible.add(acl);
+                register(table, iris, acl.getIdentifier());
+                acl.getMembers().forEach(member -> register(table, iris, member));
+                for (final CompactAuthorization auth : acl.getEntries()) {
+                    register(table, iris, auth.getIdentifier());
+                    register(table, iris, auth.getAgents());
+                    register(table, iris, auth.getAgentGroups());
+                    register(table, iris, auth.getAccessTo());
+                    register(table, iris, auth.getAccessToClass());
+                    register(table, iris, auth.getModes());
+                    for (final Triple triple : auth.getOther()) {
+                        register(table, iris, triple.getPredicate());
+                        register(table, iris, (IRI) triple.getObject());
+                    }
+                }
+            }
+        }
+
+        try {
+            final Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), ".acl-snapshot", ".tmp");
+            try {
+                writeTo(tmp, eligible, table, iris);
+                move(tmp, path);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (final IOException ex) {
+            throw new UncheckedIOException("Could not write ACL snapshot to " + path, ex);
+        }
+        return eligible.size();
+    }
+
+    private static void writeTo(final Path tmp, final List<CompiledAcl> eligible, final Map<IRI, Integer> table,
+            final List<IRI> iris) throws IOException {
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(iris.size());
+            for (final IRI iri : iris) {
+                final byte[] bytes = iri.getIRIString().getBytes(UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(eligible.size());
+            for (final CompiledAcl acl : eligible) {
+                final Instant modified = acl.getModified().get();
+                out.writeInt(table.get(acl.getIdentifier()));
+                out.writeLong(modified.getEpochSecond());
+                out.writeInt(modified.getNano());
+                out.writeInt(acl.getMembers().size());
+                for (final IRI member : acl.getMembers()) {
+                    out.writeInt(table.get(member));
+                }
+                out.writeInt(acl.getEntries().size());
+                for (final CompactAuthorization auth : acl.getEntries()) {
+                    out.writeInt(table.get(auth.getIdentifier()));
+                    write(out, table, auth.getAgents());
+                    write(out, table, auth.getAgentGroups());
+                    write(out, table, auth.getAccessTo());
+                    write(out, table, auth.getAccessToClass());
+                    write(out, table, auth.getModes());
+                    out.writeInt(auth.getOther().size());
+                    for (final Triple triple : auth.getOther()) {
+                        out.writeInt(table.get(triple.getPredicate()));
+                        out.writeInt(table.get((IRI) triple.getObject()));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read compiled ACLs from a file.
+     *
+     * @param path the file
+     * @param rdf the RDF factory
+     * @param dictionary the dictionary that assigns identifiers to the values of the authorizations
+     * @return the compiled ACLs
+     */
+    static List<CompiledAcl> read(final Path path, final RDF rdf, final IriDictionary dictionary) {
+        try (final FileChannel channel = FileChannel.open(path, READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IllegalStateException("Not an ACL snapshot: " + path);
+            }
+            final IRI[] iris = new IRI[count(buffer, IRI_SIZE)];
+            for (int i = 0; i < iris.length; ++i) {
+                final byte[] bytes = new byte[count(buffer, 1)];
+                buffer.get(bytes);
+                iris[i] = rdf.createIRI(new String(bytes, UTF_8));
+            }
+            final int count = count(buffer, ACL_SIZE);
+            final List<CompiledAcl> acls = new ArrayList<>(count);
+            for (int i = 0; i < count; ++i) {
+                final IRI identifier = iris[buffer.getInt()];
+                final Instant modified = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+                final Set<IRI> members = new HashSet<>();
+                final int memberCount = count(buffer, IRI_SIZE);
+                for (int j = 0; j < memberCount; ++j) {
+                    members.add(iris[buffer.getInt()]);
+                }
+                final int authCount = count(buffer, AUTHORIZATION_SIZE);
+                final List<CompactAuthorization> authorizations = new ArrayList<>(authCount);
+                for (int j = 0; j < authCount; ++j) {
+                    final IRI auth = iris[buffer.getInt()];
+                    final CompactAuthorization.Builder builder = CompactAuthorization.builder(auth, dictionary);
+                    read(buffer, iris, rdf, builder, auth, ACL.agent);
+                    read(buffer, iris, rdf, builder, auth, ACL.agentGroup);
+                    read(buffer, iris, rdf, builder, auth, ACL.accessTo);
+                    read(buffer, iris, rdf, builder, auth, ACL.accessToClass);
+                    read(buffer, iris, rdf, builder, auth, ACL.mode);
+                    final int otherCount = count(buffer, TRIPLE_SIZE);
+                    for (int k = 0; k < otherCount; ++k) {
+                        builder.add(rdf.createTriple(auth, iris[buffer.getInt()], iris[buffer.getInt()]));
+                    }
+                    authorizations.add(builder.build());
+                }
+                acls.add(new CompiledAcl(identifier, authorizations, members, modified));
+            }
+            LOGGER.debug("Read {} compiled ACLs from {}", acls.size(), path);
+            return acls;
+        } catch (final IOException ex) {
+            throw new UncheckedIOException("Could not read ACL snapshot from " + path, ex);
+        } catch (final BufferUnderflowException | IndexOutOfBoundsException | DateTimeException |
+                IllegalArgumentException ex) {
+            throw new IllegalStateException("Truncated or corrupt ACL snapshot: " + path, ex);
+        }
+    }
+
+    private static boolean isEligible(final CompiledAcl acl) {
+        return acl.getModified().isPresent() && acl.getEntries().stream().flatMap(auth -> auth.getOther().stream())
+            .allMatch(triple -> triple.getObject() instanceof IRI);
+    }
+
+    private static void register(final Map<IRI, Integer> table, final List<IRI> iris, final IRI... values) {
+        for (final IRI iri : values) {
+            if (!table.containsKey(iri)) {
+                table.put(iri, iris.size());
+                iris.add(iri);
+            }
+        }
+    }
+
+    private static void write(final DataOutputStream out, final Map<IRI, Integer> table, final IRI[] values)
+            throws IOException {
+        out.writeInt(values.length);
+        for (final IRI iri : values) {
+            out.writeInt(table.get(iri));
+        }
+    }
+
+    private static void read(final ByteBuffer buffer, final IRI[] iris, final RDF rdf,
+            final CompactAuthorization.Builder builder, final IRI subject, final IRI predicate) {
+        final int count = count(buffer, IRI_SIZE);
+        for (int i = 0; i < count; ++i) {
+            builder.add(rdf.createTriple(subject, predicate, iris[buffer.getInt()]));
+        }
+    }
+
+    private static int count(final ByteBuffer buffer, final int size) {
+        final int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / size) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    private static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, REPLACE_EXISTING);
+        }
+    }
+
+    private AuthorizationSnapshot() {
+        // prevent instantiation
+    }
+}
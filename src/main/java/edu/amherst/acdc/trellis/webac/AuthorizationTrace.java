@@ -0,0 +1,198 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.lang.System.nanoTime;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * The trace of a single access check.
+ *
+ * <p>A trace counts the {@code ResourceService.find} calls, the number of resources visited
+ * while walking up to the governing ACL, the size of that ACL and the time spent resolving
+ * group membership. Values loaded from a cache are not counted, so a fully cached decision
+ * reports no lookups and an ancestor depth of zero.</p>
+ *
+ * @author agent
+ */
+public final class AuthorizationTrace {
+
+    private static final IRI[] MODES = new IRI[] { ACL.Read, ACL.Write, ACL.Append, ACL.Control };
+
+    static final AuthorizationTrace NONE = new AuthorizationTrace(null, false);
+
+    private final IRI identifier;
+
+    private final boolean enabled;
+
+    private final long started;
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private final AtomicLong groupNanos = new AtomicLong();
+
+    private volatile int aclSize;
+
+    private volatile IRI acl;
+
+    private volatile IRI mode;
+
+    private volatile boolean granted;
+
+    private volatile long duration;
+
+    private AuthorizationTrace(final IRI identifier, final boolean enabled) {
+        this.identifier = identifier;
+        this.enabled = enabled;
+        this.started = enabled ? nanoTime() : 0L;
+    }
+
+    /**
+     * Start a trace for a check on a resource.
+     *
+     * @param metrics the sink that will receive the trace
+     * @param identifier the resource identifier
+     * @return a new trace, or a shared inert trace if the sink is disabled
+     */
+    static AuthorizationTrace start(final AuthorizationMetrics metrics, final IRI identifier) {
+        return metrics.isEnabled() ? new AuthorizationTrace(identifier, true) : NONE;
+    }
+
+    /**
+     * @return the identifier of the resource that was checked
+     */
+    public IRI getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the governing ACL, if one was found
+     */
+    public Optional<IRI> getAcl() {
+        return Optional.ofNullable(acl);
+    }
+
+    /**
+     * @return the requested access mode, if it is one of the standard acl: modes
+     */
+    public Optional<IRI> getMode() {
+        return Optional.ofNullable(mode);
+    }
+
+    /**
+     * @return whether access was granted
+     */
+    public boolean isGranted() {
+        return granted;
+    }
+
+    /**
+     * @return the time taken to reach the decision, in nanoseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return the number of ResourceService lookups made for the decision
+     */
+    public int getResourceLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * @return the number of resources visited while walking up to the governing ACL
+     */
+    public int getAncestorDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return the number of authorizations in the governing ACL, or zero if it was not loaded; when the
+     *         ACL is evaluated lazily, this is the number of its children
+     */
+    public int getAclSize() {
+        return aclSize;
+    }
+
+    /**
+     * @return the time spent resolving group membership, in nanoseconds
+     */
+    public long getGroupResolutionTime() {
+        return groupNanos.get();
+    }
+
+    void lookup() {
+        if (enabled) {
+            lookups.incrementAndGet();
+        }
+    }
+
+    void step() {
+        if (enabled) {
+            depth.incrementAndGet();
+        }
+    }
+
+    void acl(final IRI acl, final int size) {
+        if (enabled) {
+            this.acl = acl;
+            this.aclSize = size;
+        }
+    }
+
+    void groups(final long nanos) {
+        if (enabled) {
+            groupNanos.addAndGet(nanos);
+        }
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Complete the trace and hand it to the sink.
+     *
+     * @param metrics the sink
+     * @param predicate the test for the requested mode
+     * @param result whether access was granted
+     * @return the result
+     */
+    Boolean finish(final AuthorizationMetrics metrics, final Predicate<IRI> predicate, final Boolean result) {
+        if (enabled) {
+            duration = nanoTime() - started;
+            granted = result;
+            for (final IRI m : MODES) {
+                if (predicate.test(m)) {
+                    mode = m;
+                    break;
+                }
+            }
+            metrics.record(this);
+        }
+        return result;
+    }
+}
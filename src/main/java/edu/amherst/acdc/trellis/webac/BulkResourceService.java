@@ -0,0 +1,53 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.ResourceService;
+import edu.amherst.acdc.trellis.spi.Session;
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A ResourceService that can load many authorizations in a single call.
+ *
+ * <p>When the bound ResourceService implements this interface, the WebAC service loads the
+ * authorizations in an ACL with one call per batch of children, instead of one call per child.</p>
+ *
+ * @author agent
+ */
+public interface BulkResourceService extends ResourceService {
+
+    /**
+     * Find the authorizations among a list of resources.
+     *
+     * <p>Resources that do not exist or are not of type acl:Authorization are omitted.</p>
+     *
+     * @param session the session
+     * @param identifiers the resource identifiers
+     * @return the authorization resources
+     */
+    Stream<Resource> findAuthorizations(Session session, List<IRI> identifiers);
+
+    /**
+     * @return the maximum number of identifiers to pass to a single call, or a value less than one for no limit
+     */
+    default int getBatchSize() {
+        return Integer.MAX_VALUE;
+    }
+}
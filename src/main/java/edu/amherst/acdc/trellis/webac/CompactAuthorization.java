@@ -0,0 +1,261 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static edu.amherst.acdc.trellis.api.Resource.TripleContext.USER_MANAGED;
+import static java.util.Arrays.copyOf;
+import static java.util.Collections.emptyList;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.Authorization;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.Graph;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.Triple;
+
+/**
+ * An array-backed representation of a single {@code acl:Authorization}.
+ *
+ * <p>Instances are read in a single pass over the triples of an authorization resource,
+ * dispatching on the predicate IRI, so no intermediate {@code Graph} is built. The agent,
+ * group, accessTo, accessToClass and mode values are held as identifiers in the
+ * {@link IriDictionary} given to the builder, which every authorization in an ACL shares.
+ * A full {@link Authorization} can still be produced on demand.</p>
+ *
+ * @author agent
+ */
+final class CompactAuthorization {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final IRI identifier;
+
+    private final IriDictionary dictionary;
+
+    private final int[] agents;
+
+    private final int[] groups;
+
+    private final int[] accessTo;
+
+    private final int[] accessToClass;
+
+    private final int[] modes;
+
+    private final List<Triple> other;
+
+    private CompactAuthorization(final Builder builder) {
+        this.identifier = builder.identifier;
+        this.dictionary = builder.dictionary;
+        this.agents = trim(builder.agents, builder.agentCount);
+        this.groups = trim(builder.groups, builder.groupCount);
+        this.accessTo = trim(builder.accessTo, builder.accessToCount);
+        this.accessToClass = trim(builder.accessToClass, builder.accessToClassCount);
+        this.modes = trim(builder.modes, builder.modeCount);
+        this.other = builder.other == null ? emptyList() : builder.other;
+    }
+
+    /**
+     * Read an authorization from a resource.
+     *
+     * @param resource the authorization resource
+     * @param dictionary the dictionary that assigns identifiers to the values
+     * @return the authorization
+     */
+    static CompactAuthorization from(final Resource resource, final IriDictionary dictionary) {
+        final Builder builder = builder(resource.getIdentifier(), dictionary);
+        final Iterator<? extends Triple> triples = resource.stream(USER_MANAGED).iterator();
+        while (triples.hasNext()) {
+            builder.add(triples.next());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create a builder.
+     *
+     * @param identifier the authorization identifier
+     * @param dictionary the dictionary that assigns identifiers to the values
+     * @return the builder
+     */
+    static Builder builder(final IRI identifier, final IriDictionary dictionary) {
+        return new Builder(identifier, dictionary);
+    }
+
+    IRI getIdentifier() {
+        return identifier;
+    }
+
+    IriDictionary getDictionary() {
+        return dictionary;
+    }
+
+    IRI[] getAgents() {
+        return dictionary.get(agents);
+    }
+
+    IRI[] getAgentGroups() {
+        return dictionary.get(groups);
+    }
+
+    IRI[] getAccessTo() {
+        return dictionary.get(accessTo);
+    }
+
+    IRI[] getAccessToClass() {
+        return dictionary.get(accessToClass);
+    }
+
+    IRI[] getModes() {
+        return dictionary.get(modes);
+    }
+
+    int[] getAgentIds() {
+        return agents;
+    }
+
+    int[] getAgentGroupIds() {
+        return groups;
+    }
+
+    int[] getAccessToIds() {
+        return accessTo;
+    }
+
+    int[] getAccessToClassIds() {
+        return accessToClass;
+    }
+
+    int[] getModeIds() {
+        return modes;
+    }
+
+    List<Triple> getOther() {
+        return other;
+    }
+
+    /**
+     * Convert this into a full authorization object.
+     *
+     * @param rdf the RDF factory
+     * @return the authorization
+     */
+    Authorization toAuthorization(final RDF rdf) {
+        final Graph graph = rdf.createGraph();
+        add(graph, ACL.agent, agents);
+        add(graph, ACL.agentGroup, groups);
+        add(graph, ACL.accessTo, accessTo);
+        add(graph, ACL.accessToClass, accessToClass);
+        add(graph, ACL.mode, modes);
+        other.forEach(graph::add);
+        return new Authorization(identifier, graph);
+    }
+
+    private void add(final Graph graph, final IRI predicate, final int[] objects) {
+        for (final int object : objects) {
+            graph.add(identifier, predicate, dictionary.get(object));
+        }
+    }
+
+    private static int[] trim(final int[] values, final int count) {
+        return count == 0 ? EMPTY : values.length == count ? values : copyOf(values, count);
+    }
+
+    /**
+     * A builder that accumulates {@code acl:} values from a stream of triples.
+     */
+    static final class Builder {
+        private final IRI identifier;
+        private final IriDictionary dictionary;
+        private List<Triple> other;
+        private int[] agents = EMPTY;
+        private int[] groups = EMPTY;
+        private int[] accessTo = EMPTY;
+        private int[] accessToClass = EMPTY;
+        private int[] modes = EMPTY;
+        private int agentCount;
+        private int groupCount;
+        private int accessToCount;
+        private int accessToClassCount;
+        private int modeCount;
+
+        private Builder(final IRI identifier, final IriDictionary dictionary) {
+            this.identifier = identifier;
+            this.dictionary = requireNonNull(dictionary, "A non-null dictionary must be provided!");
+        }
+
+        /**
+         * Add a triple; triples about other subjects are ignored.
+         *
+         * @param triple the triple
+         * @return this builder
+         */
+        Builder add(final Triple triple) {
+            if (!identifier.equals(triple.getSubject())) {
+                return this;
+            }
+            final IRI predicate = triple.getPredicate();
+            if (!(triple.getObject() instanceof IRI)) {
+                addOther(triple);
+                return this;
+            }
+            final IRI object = (IRI) triple.getObject();
+            if (ACL.mode.equals(predicate)) {
+                modes = append(modes, modeCount++, dictionary.intern(AccessMode.intern(object)));
+            } else if (ACL.agent.equals(predicate)) {
+                agents = append(agents, agentCount++, dictionary.intern(object));
+            } else if (ACL.accessTo.equals(predicate)) {
+                accessTo = append(accessTo, accessToCount++, dictionary.intern(object));
+            } else if (ACL.agentGroup.equals(predicate)) {
+                groups = append(groups, groupCount++, dictionary.intern(object));
+            } else if (ACL.accessToClass.equals(predicate)) {
+                accessToClass = append(accessToClass, accessToClassCount++, dictionary.intern(object));
+            } else {
+                addOther(triple);
+            }
+            return this;
+        }
+
+        /**
+         * @return the authorization
+         */
+        CompactAuthorization build() {
+            return new CompactAuthorization(this);
+        }
+
+        private void addOther(final Triple triple) {
+            // Only the less common acl: predicates need to be retained for toAuthorization
+            if (triple.getPredicate().getIRIString().startsWith(ACL.uri)) {
+                if (other == null) {
+                    other = new ArrayList<>();
+                }
+                other.add(triple);
+            }
+        }
+
+        private static int[] append(final int[] values, final int position, final int value) {
+            final int[] target = position < values.length ? values : copyOf(values, Math.max(2, position * 2));
+            target[position] = value;
+            return target;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Arrays.binarySearch;
+import static java.util.Arrays.copyOf;
+import static java.util.Arrays.sort;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.stream.Collectors.toList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import edu.amherst.acdc.trellis.spi.Authorization;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.slf4j.Logger;
+
+/**
+ * The compiled form of an ACL resource.
+ *
+ * <p>Along with the authorizations themselves, this holds an immutable index that maps
+ * each agent, group, accessTo and accessToClass value to the set of authorizations that
+ * mention it, so that matching an agent against the ACL is a handful of bitset operations.
+ * The index is keyed on identifiers from the {@link IriDictionary} that all of the
+ * authorizations share, held in sorted int arrays, so the IRIs of a request are resolved
+ * once and all further matching compares ints. The modes
+ * granted by each authorization are stored as a bitmask over a per-ACL table of mode
+ * identifiers. The identifiers of all children are also kept, so that a change to any child
+ * can be traced back to the cached ACL.</p>
+ *
+ * @author agent
+ */
+final class CompiledAcl {
+
+    private static final Logger LOGGER = getLogger(CompiledAcl.class);
+
+    private static final int MAX_MODES = Long.SIZE;
+
+    static final int NO_DELEGATION = -2;
+
+    private final IRI identifier;
+
+    private final IriDictionary dictionary;
+
+    private final List<CompactAuthorization> authorizations;
+
+    private final Set<IRI> members;
+
+    private final IdIndex agents;
+
+    private final IdIndex groups;
+
+    private final IdIndex accessTo;
+
+    private final IdIndex accessToClass;
+
+    private int[] modeTable = new int[0];
+
+    private final long[] modes;
+
+    private final Instant modified;
+
+    private volatile List<Authorization> views;
+
+    /**
+     * Create a compiled ACL.
+     *
+     * @param identifier the ACL identifier
+     * @param authorizations the authorizations contained by the ACL
+     * @param members the identifiers of all children of the ACL
+     */
+    CompiledAcl(final IRI identifier, final List<CompactAuthorization> authorizations, final Set<IRI> members) {
+        this(identifier, authorizations, members, null);
+    }
+
+    /**
+     * Create a compiled ACL.
+     *
+     * @param identifier the ACL identifier
+     * @param authorizations the authorizations contained by the ACL
+     * @param members the identifiers of all children of the ACL
+     * @param modified the modification time of the ACL resource, may be null
+     * @throws IllegalArgumentException if the authorizations do not share a dictionary
+     */
+    CompiledAcl(final IRI identifier, final List<CompactAuthorization> authorizations, final Set<IRI> members,
+            final Instant modified) {
+        this.identifier = identifier;
+        final IriDictionary shared = authorizations.isEmpty() ? null : authorizations.get(0).getDictionary();
+        if (authorizations.stream().anyMatch(auth -> auth.getDictionary() != shared)) {
+            throw new IllegalArgumentException("The authorizations in " + identifier + " must share a dictionary");
+        }
+        this.dictionary = shared;
+        this.modified = modified;
+        this.authorizations = unmodifiableList(new ArrayList<>(authorizations));
+        this.members = unmodifiableSet(new HashSet<>(members));
+        this.modes = new long[authorizations.size()];
+
+        final Map<Integer, BitSet> agentIdx = new HashMap<>();
+        final Map<Integer, BitSet> groupIdx = new HashMap<>();
+        final Map<Integer, BitSet> accessToIdx = new HashMap<>();
+        final Map<Integer, BitSet> accessToClassIdx = new HashMap<>();
+        for (int i = 0; i < authorizations.size(); ++i) {
+            final CompactAuthorization auth = authorizations.get(i);
+            index(agentIdx, auth.getAgentIds(), i);
+            index(groupIdx, auth.getAgentGroupIds(), i);
+            index(accessToIdx, auth.getAccessToIds(), i);
+            index(accessToClassIdx, auth.getAccessToClassIds(), i);
+            for (final int mode : auth.getModeIds()) {
+                modes[i] |= modeBit(mode);
+            }
+        }
+        this.agents = new IdIndex(agentIdx);
+        this.groups = new IdIndex(groupIdx);
+        this.accessTo = new IdIndex(accessToIdx);
+        this.accessToClass = new IdIndex(accessToClassIdx);
+    }
+
+    IRI getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the dictionary of the identifiers in this ACL, or null if it has no authorizations
+     */
+    IriDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Produce full authorization objects for the entries in this ACL.
+     *
+     * <p>The objects are built on first use and then shared by every later call.</p>
+     *
+     * @param rdf the RDF factory
+     * @return the authorizations
+     */
+    Stream<Authorization> getAuthorizations(final RDF rdf) {
+        List<Authorization> result = views;
+        if (result == null) {
+            // A race here only builds the same views twice
+            result = unmodifiableList(authorizations.stream().map(auth -> auth.toAuthorization(rdf))
+                    .collect(toList()));
+            views = result;
+        }
+        return result.stream();
+    }
+
+    List<CompactAuthorization> getEntries() {
+        return authorizations;
+    }
+
+    Set<IRI> getMembers() {
+        return members;
+    }
+
+    Optional<Instant> getModified() {
+        return Optional.ofNullable(modified);
+    }
+
+    int size() {
+        return authorizations.size();
+    }
+
+    Boolean contains(final IRI member) {
+        return members.contains(member);
+    }
+
+    /**
+     * Find the modes granted to an agent on a resource governed by this ACL.
+     *
+     * @param agent the agent
+     * @param delegatedBy the delegating agent, if any
+     * @param agentGroups the groups to which the agent belongs, preferably as a {@link GroupSet}
+     * @param target the resource that carries this ACL
+     * @return the granted modes
+     */
+    Set<IRI> getModes(final IRI agent, final Optional<IRI> delegatedBy, final Collection<IRI> agentGroups,
+            final EffectiveAcl target) {
+        if (dictionary == null) {
+            return emptySet();
+        }
+        final int delegator = delegatedBy.map(dictionary::lookup).orElse(NO_DELEGATION);
+        if (delegator == IriDictionary.ABSENT) {
+            // No authorization in this ACL names the delegating agent
+            return emptySet();
+        }
+        final int[] groupIds = agentGroups instanceof GroupSet ? ((GroupSet) agentGroups).getIds(dictionary) :
+            dictionary.lookup(agentGroups);
+        return getModes(dictionary.lookup(agent), delegator, groupIds, dictionary.lookup(target.getAncestor()),
+                dictionary.lookup(target.getAncestorTypes()));
+    }
+
+    /**
+     * Find the modes granted to an agent, with every IRI given as its dictionary identifier.
+     *
+     * @param agent the agent, or {@link IriDictionary#ABSENT}
+     * @param delegatedBy the delegating agent, or {@link #NO_DELEGATION}
+     * @param agentGroups the groups to which the agent belongs
+     * @param ancestor the resource that carries this ACL, or {@link IriDictionary#ABSENT}
+     * @param ancestorTypes the rdf:type values of that resource
+     * @return the granted modes
+     */
+    Set<IRI> getModes(final int agent, final int delegatedBy, final int[] agentGroups, final int ancestor,
+            final int[] ancestorTypes) {
+        final BitSet candidates = union(groups, agentGroups);
+        or(candidates, agents.get(agent));
+        if (candidates.isEmpty()) {
+            return emptySet();
+        }
+
+        final BitSet targets = union(accessToClass, ancestorTypes);
+        or(targets, accessTo.get(ancestor));
+        candidates.and(targets);
+        if (candidates.isEmpty()) {
+            return emptySet();
+        }
+
+        if (delegatedBy != NO_DELEGATION) {
+            final BitSet delegated = agents.get(delegatedBy);
+            if (delegated == null) {
+                return emptySet();
+            }
+            candidates.and(delegated);
+        }
+
+        long granted = 0L;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            granted |= modes[i];
+        }
+        final Set<IRI> result = new HashSet<>();
+        for (int i = 0; i < modeTable.length; ++i) {
+            if ((granted & (1L << i)) != 0) {
+                result.add(dictionary.get(modeTable[i]));
+            }
+        }
+        return unmodifiableSet(result);
+    }
+
+    private long modeBit(final int mode) {
+        for (int i = 0; i < modeTable.length; ++i) {
+            if (modeTable[i] == mode) {
+                return 1L << i;
+            }
+        }
+        if (modeTable.length == MAX_MODES) {
+            LOGGER.warn("Ignoring mode {} in {}: too many distinct modes", dictionary.get(mode), identifier);
+            return 0L;
+        }
+        modeTable = copyOf(modeTable, modeTable.length + 1);
+        modeTable[modeTable.length - 1] = mode;
+        return 1L << (modeTable.length - 1);
+    }
+
+    private static BitSet union(final IdIndex index, final int[] keys) {
+        final BitSet bits = new BitSet();
+        if (!index.isEmpty()) {
+            for (final int key : keys) {
+                or(bits, index.get(key));
+            }
+        }
+        return bits;
+    }
+
+    private static void or(final BitSet bits, final BitSet other) {
+        if (other != null) {
+            bits.or(other);
+        }
+    }
+
+    private static void index(final Map<Integer, BitSet> index, final int[] keys, final int position) {
+        for (final int key : keys) {
+            index.computeIfAbsent(key, k -> new BitSet()).set(position);
+        }
+    }
+
+    /**
+     * An immutable map from dictionary identifiers to sets of authorization positions.
+     */
+    private static final class IdIndex {
+        private final int[] keys;
+        private final BitSet[] values;
+
+        private IdIndex(final Map<Integer, BitSet> index) {
+            this.keys = new int[index.size()];
+            int i = 0;
+            for (final Integer key : index.keySet()) {
+                keys[i++] = key;
+            }
+            sort(keys);
+            this.values = new BitSet[keys.length];
+            for (i = 0; i < keys.length; ++i) {
+                values[i] = index.get(keys[i]);
+            }
+        }
+
+        private boolean isEmpty() {
+            return keys.length == 0;
+        }
+
+        private BitSet get(final int key) {
+            final int idx = key < 0 ? -1 : binarySearch(keys, key);
+            return idx < 0 ? null : values[idx];
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.Objects.hash;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A bounded cache of authorization decisions.
+ *
+ * <p>Each entry is keyed by the requesting agent, the delegating agent (if any), the
+ * resource that carries the governing ACL and the ACL itself, and records every access
+ * mode granted by that ACL to that agent. Because the full set of modes is stored, one
+ * entry answers a check for any requested mode.</p>
+ *
+ * @author agent
+ */
+public class DecisionCache {
+
+    private final ExpiringCache<Key, Decision> cache;
+
+    /**
+     * Create a decision cache.
+     *
+     * @param maxSize the maximum number of decisions to hold
+     * @param ttl the time-to-live of each decision
+     * @param unit the unit of the ttl value
+     */
+    public DecisionCache(final long maxSize, final long ttl, final TimeUnit unit) {
+        this.cache = new ExpiringCache<>(maxSize, ttl, unit);
+    }
+
+    /**
+     * Drop every decision that depends on the given resource.
+     *
+     * @param identifier the identifier of an ACL, an authorization or a resource carrying an ACL
+     */
+    public void invalidate(final IRI identifier) {
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        cache.invalidateIf(key -> key.dependsOn(identifier), decision -> decision.dependsOn(identifier));
+    }
+
+    /**
+     * Drop every decision made for, or on behalf of, the given agent, along with every
+     * decision that relied on membership of the agent, if it is a group.
+     *
+     * @param agent the agent or group identifier
+     */
+    public void invalidateAgent(final IRI agent) {
+        requireNonNull(agent, "A non-null agent must be provided!");
+        cache.invalidateIf(key -> key.isFor(agent), decision -> decision.usesGroup(agent));
+    }
+
+    /**
+     * Drop all cached decisions.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the number of cached decisions
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of decisions that were served from the cache
+     */
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * @return the number of decisions that had to be evaluated
+     */
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    Decision get(final Key key, final Function<Key, Decision> loader, final long generation) {
+        return cache.get(key, loader, generation);
+    }
+
+    Decision getIfPresent(final Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    void put(final Key key, final Decision decision, final long generation, final long stamp) {
+        cache.put(key, decision, generation, stamp);
+    }
+
+    long stamp() {
+        return cache.stamp();
+    }
+
+    void advance(final long generation) {
+        cache.advance(generation);
+    }
+
+    /**
+     * The cache key for a decision.
+     */
+    static final class Key {
+        private final IRI agent;
+        private final IRI delegatedBy;
+        private final IRI ancestor;
+        private final IRI acl;
+        private final String aclPrefix;
+        private final int hashCode;
+
+        /**
+         * Create a decision key.
+         *
+         * @param agent the agent
+         * @param delegatedBy the delegating agent, may be null
+         * @param acl the effective ACL
+         */
+        Key(final IRI agent, final IRI delegatedBy, final EffectiveAcl acl) {
+            this.agent = agent;
+            this.delegatedBy = delegatedBy;
+            this.ancestor = acl.getAncestor();
+            this.acl = acl.getAcl();
+            this.aclPrefix = this.acl.getIRIString() + "/";
+            this.hashCode = hash(agent, delegatedBy, ancestor, this.acl);
+        }
+
+        boolean dependsOn(final IRI identifier) {
+            return acl.equals(identifier) || ancestor.equals(identifier) ||
+                identifier.getIRIString().startsWith(aclPrefix);
+        }
+
+        boolean isFor(final IRI identifier) {
+            return identifier.equals(agent) || identifier.equals(delegatedBy);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Objects.equals(agent, other.agent) && Objects.equals(delegatedBy, other.delegatedBy) &&
+                ancestor.equals(other.ancestor) && acl.equals(other.acl);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The access modes granted by an ACL, along with the compiled ACL and the agent's groups
+     * they were derived from.
+     */
+    static final class Decision {
+        private final Set<IRI> modes;
+        private final int mask;
+        private final CompiledAcl source;
+        private final Set<IRI> groups;
+
+        /**
+         * Create a decision that did not depend on group membership.
+         *
+         * @param modes the granted modes
+         * @param source the compiled ACL, may be null if the ACL could not be loaded
+         */
+        Decision(final Set<IRI> modes, final CompiledAcl source) {
+            this(modes, source, emptySet());
+        }
+
+        /**
+         * Create a decision.
+         *
+         * @param modes the granted modes
+         * @param source the compiled ACL, may be null if the ACL could not be loaded
+         * @param groups the groups of the agent that were used to reach the decision
+         */
+        Decision(final Set<IRI> modes, final CompiledAcl source, final Set<IRI> groups) {
+            this.modes = unmodifiableSet(modes);
+            this.mask = AccessMode.toMask(modes);
+            this.source = source;
+            this.groups = groups;
+        }
+
+        Set<IRI> getModes() {
+            return modes;
+        }
+
+        int getMask() {
+            return mask;
+        }
+
+        int getAclSize() {
+            return source == null ? 0 : source.size();
+        }
+
+        boolean dependsOn(final IRI identifier) {
+            return source != null && source.contains(identifier);
+        }
+
+        boolean usesGroup(final IRI group) {
+            return groups.contains(group);
+        }
+    }
+}
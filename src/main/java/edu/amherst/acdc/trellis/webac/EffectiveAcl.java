@@ -0,0 +1,62 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.util.List;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * The ACL that governs a resource, along with the ancestor (or the resource itself)
+ * to which that ACL is attached.
+ *
+ * @author agent
+ */
+final class EffectiveAcl {
+
+    private final IRI ancestor;
+
+    private final List<IRI> ancestorTypes;
+
+    private final IRI acl;
+
+    /**
+     * Create an effective ACL value.
+     *
+     * @param ancestor the identifier of the resource that carries the ACL
+     * @param ancestorTypes the rdf:type values of that resource
+     * @param acl the identifier of the ACL
+     */
+    EffectiveAcl(final IRI ancestor, final List<IRI> ancestorTypes, final IRI acl) {
+        this.ancestor = ancestor;
+        this.ancestorTypes = unmodifiableList(ancestorTypes);
+        this.acl = acl;
+    }
+
+    IRI getAncestor() {
+        return ancestor;
+    }
+
+    List<IRI> getAncestorTypes() {
+        return ancestorTypes;
+    }
+
+    IRI getAcl() {
+        return acl;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.stream.Collectors.toList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+
+/**
+ * The strategy used to fetch the children of an ACL resource.
+ *
+ * <p>Fetching authorizations involves blocking calls to the {@code ResourceService}, so
+ * rather than using the common {@code ForkJoinPool}, work is either kept on the calling
+ * thread or handed to a dedicated executor. Lists smaller than the parallelism threshold
+ * are always processed on the calling thread, as are lists met by a task that is itself
+ * running on the executor, so that such a task never waits for a thread from its own pool.</p>
+ *
+ * @author agent
+ */
+public final class ExecutionStrategy implements AutoCloseable {
+
+    private static final Logger LOGGER = getLogger(ExecutionStrategy.class);
+
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private static final ThreadLocal<ExecutionStrategy> RUNNING = new ThreadLocal<>();
+
+    private final ExecutorService executor;
+
+    private final int threshold;
+
+    private final LongAdder tasks = new LongAdder();
+
+    private final LongAdder queueNanos = new LongAdder();
+
+    private final LongAdder executionNanos = new LongAdder();
+
+    private ExecutionStrategy(final ExecutorService executor, final int threshold) {
+        this.executor = executor;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Process all work on the calling thread.
+     *
+     * @return the execution strategy
+     */
+    public static ExecutionStrategy sequential() {
+        return new ExecutionStrategy(null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Process work on a dedicated, bounded pool of daemon threads.
+     *
+     * <p>When the queue is full, the calling thread runs the task itself.</p>
+     *
+     * @param threads the maximum number of threads
+     * @param queueSize the maximum number of queued tasks
+     * @param threshold the minimum number of items for which the pool is used
+     * @return the execution strategy
+     */
+    public static ExecutionStrategy boundedPool(final int threads, final int queueSize, final int threshold) {
+        checkThreshold(threshold);
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), daemonThreads(), new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return new ExecutionStrategy(executor, threshold);
+    }
+
+    /**
+     * Process work on virtual threads, when the runtime supports them.
+     *
+     * <p>On runtimes without virtual threads, this falls back to a bounded pool with one
+     * thread per available processor.</p>
+     *
+     * @param threshold the minimum number of items for which virtual threads are used
+     * @return the execution strategy
+     */
+    public static ExecutionStrategy virtualThreads(final int threshold) {
+        checkThreshold(threshold);
+        try {
+            final ExecutorService executor = (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new ExecutionStrategy(executor, threshold);
+        } catch (final ReflectiveOperationException ex) {
+            LOGGER.info("Virtual threads are not available, using a bounded thread pool");
+            final int processors = Runtime.getRuntime().availableProcessors();
+            return boundedPool(processors, processors * 64, threshold);
+        }
+    }
+
+    /**
+     * Apply a function to each item, possibly in parallel.
+     *
+     * @param items the items
+     * @param fn the function
+     * @param <T> the item type
+     * @param <R> the result type
+     * @return the results, in the same order as the items
+     */
+    <T, R> List<R> map(final List<T> items, final Function<? super T, ? extends R> fn) {
+        if (isInline(items)) {
+            return items.stream().map(item -> run(fn, item, nanoTime(), false)).collect(toList());
+        }
+        final List<Future<R>> futures = new ArrayList<>(items.size());
+        for (final T item : items) {
+            final long submitted = nanoTime();
+            futures.add(executor.submit(() -> run(fn, item, submitted, true)));
+        }
+        final List<R> results = new ArrayList<>(items.size());
+        try {
+            for (final Future<R> future : futures) {
+                results.add(future.get());
+            }
+        } catch (final InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new CompletionException(ex);
+        } catch (final ExecutionException ex) {
+            futures.forEach(future -> future.cancel(true));
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new CompletionException(ex.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Test whether any item matches, possibly in parallel.
+     *
+     * <p>Below the parallelism threshold, the items are tested in order on the calling thread and
+     * testing stops at the first match. Otherwise every item is handed to the executor, the first
+     * match is returned as soon as it completes and any remaining work is cancelled.</p>
+     *
+     * @param items the items
+     * @param test the test
+     * @param <T> the item type
+     * @return true if any item matches
+     */
+    <T> boolean anyMatch(final List<T> items, final Predicate<? super T> test) {
+        if (isInline(items)) {
+            return items.stream().anyMatch(item -> run(test::test, item, nanoTime(), false));
+        }
+        final CompletionService<Boolean> completion = new ExecutorCompletionService<>(executor);
+        final List<Future<Boolean>> futures = new ArrayList<>(items.size());
+        try {
+            for (final T item : items) {
+                final long submitted = nanoTime();
+                futures.add(completion.submit(() -> run(test::test, item, submitted, true)));
+            }
+            for (int i = 0; i < futures.size(); ++i) {
+                if (completion.take().get()) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(ex);
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new CompletionException(ex.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    /**
+     * Run a single task asynchronously.
+     *
+     * <p>Unlike {@link #map}, this does not consult the parallelism threshold: with a pool the
+     * task is always handed to another thread, since that is the point of an asynchronous call.
+     * It is therefore meant for the asynchronous API and for background work, not for lookups
+     * that the calling thread then waits on. With the sequential strategy, the task runs on the
+     * calling thread and the returned future is already complete.</p>
+     *
+     * @param supplier the task
+     * @param <T> the result type
+     * @return a future holding the result of the task
+     */
+    <T> CompletableFuture<T> submit(final Supplier<T> supplier) {
+        if (executor == null) {
+            final CompletableFuture<T> future = new CompletableFuture<>();
+            try {
+                future.complete(run(x -> supplier.get(), null, nanoTime(), false));
+            } catch (final RuntimeException ex) {
+                future.completeExceptionally(ex);
+            }
+            return future;
+        }
+        final long submitted = nanoTime();
+        return supplyAsync(() -> run(x -> supplier.get(), null, submitted, true), executor);
+    }
+
+    /**
+     * Run a task whose result nobody waits for, if this strategy has threads of its own.
+     *
+     * <p>With the sequential strategy the task is skipped, since it would otherwise delay the
+     * calling thread. A task that fails is logged.</p>
+     *
+     * @param task the task
+     */
+    void background(final Runnable task) {
+        if (executor != null) {
+            submit(() -> {
+                task.run();
+                return null;
+            }).whenComplete((x, err) -> {
+                if (err != null) {
+                    LOGGER.warn("Background task failed: {}", err.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread; this is always zero for the sequential
+     *         and virtual thread strategies
+     */
+    public int getQueueDepth() {
+        if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getQueue().size();
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of tasks that have been run
+     */
+    public long getTaskCount() {
+        return tasks.sum();
+    }
+
+    /**
+     * @param unit the time unit
+     * @return the total time tasks spent waiting in the queue
+     */
+    public long getQueueTime(final TimeUnit unit) {
+        return unit.convert(queueNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit the time unit
+     * @return the total time spent running tasks
+     */
+    public long getExecutionTime(final TimeUnit unit) {
+        return unit.convert(executionNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private <T, R> R run(final Function<? super T, ? extends R> fn, final T item, final long submitted,
+            final boolean pooled) {
+        final long start = nanoTime();
+        if (pooled) {
+            queueNanos.add(start - submitted);
+            RUNNING.set(this);
+        }
+        try {
+            return fn.apply(item);
+        } finally {
+            if (pooled) {
+                RUNNING.remove();
+            }
+            tasks.increment();
+            executionNanos.add(nanoTime() - start);
+        }
+    }
+
+    private boolean isInline(final List<?> items) {
+        return executor == null || items.size() < threshold || RUNNING.get() == this;
+    }
+
+    private static void checkThreshold(final int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("The parallelism threshold must be positive!");
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        final int pool = POOL_COUNT.incrementAndGet();
+        final AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, "trellis-webac-" + pool + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
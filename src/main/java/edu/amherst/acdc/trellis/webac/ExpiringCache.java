@@ -0,0 +1,429 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.lang.System.nanoTime;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A bounded, concurrent cache with time-based expiry.
+ *
+ * <p>Loading happens outside of any lock. Threads that miss on the same key at the same
+ * time share a single call to the loader, unless the key is invalidated in the meantime,
+ * after which new callers load it again. When the cache grows past its
+ * maximum size, a sweep visits the next few entries, resuming where the previous sweep
+ * stopped and wrapping around at the end, so that over time every entry is examined.
+ * Expired entries met by the sweep are dropped; if none were, the least recently used of
+ * the entries visited is evicted. This keeps eviction cost constant regardless of the
+ * cache size. Expired entries are also dropped when they are next read.</p>
+ *
+ * <p>A value is not cached if an invalidation that covers its key or its value ran while it
+ * was being loaded, since it may have been read before the change that caused the
+ * invalidation. Invalidations of other entries do not affect it. Only the most recent
+ * invalidations are remembered, so a load that overlaps more of them than that is not
+ * cached either.</p>
+ *
+ * <p>Each entry is also tagged with a generation. Advancing the cache to a new generation
+ * drops every entry, and any value computed in an earlier generation that is written
+ * afterwards is never served.</p>
+ *
+ * @author agent
+ */
+final class ExpiringCache<K, V> {
+
+    private static final int EVICTION_SAMPLE = 16;
+
+    private static final int INVALIDATION_LOG_SIZE = 64;
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    private final Map<K, Load<V>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<Invalidation<K, V>> log = new AtomicReferenceArray<>(INVALIDATION_LOG_SIZE);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Iterator<Map.Entry<K, Entry<V>>> sweep;
+
+    private final long maxSize;
+
+    private final long ttlNanos;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize the maximum number of entries
+     * @param ttl the time-to-live of each entry
+     * @param unit the unit of the ttl value
+     */
+    ExpiringCache(final long maxSize, final long ttl, final TimeUnit unit) {
+        requireNonNull(unit, "A non-null time unit must be provided!");
+        if (maxSize < 0 || ttl < 0) {
+            throw new IllegalArgumentException("Cache size and ttl values must not be negative!");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * Fetch a cached value, loading it if absent or expired.
+     *
+     * @param key the key
+     * @param loader a function that loads the value for a key
+     * @return the value, or null if the loader returned null
+     */
+    V get(final K key, final Function<? super K, ? extends V> loader) {
+        return get(key, loader, generation.get());
+    }
+
+    /**
+     * Fetch a cached value, loading it if absent or expired.
+     *
+     * @param key the key
+     * @param loader a function that loads the value for a key
+     * @param gen the generation in which the loader runs
+     * @return the value, or null if the loader returned null
+     */
+    V get(final K key, final Function<? super K, ? extends V> loader, final long gen) {
+        final V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        } else if (!isEnabled()) {
+            return loader.apply(key);
+        }
+        final Load<V> load = new Load<>(gen);
+        final Load<V> existing = loading.putIfAbsent(key, load);
+        if (existing != null) {
+            // A loader that asks for its own key, or a load for another generation, is not shared
+            return existing.owner == Thread.currentThread() || existing.generation != gen ?
+                loader.apply(key) : existing.await();
+        }
+        try {
+            final long stamp = stamp();
+            final V value = loader.apply(key);
+            if (value != null) {
+                put(key, value, gen, stamp);
+            }
+            load.complete(value);
+            return value;
+        } catch (final RuntimeException | Error ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    /**
+     * Fetch a cached value, if present and not expired.
+     *
+     * @param key the key
+     * @return the value or null
+     */
+    V getIfPresent(final K key) {
+        final Entry<V> entry = entries.get(key);
+        final long now = nanoTime();
+        if (entry != null) {
+            if (now - entry.created < ttlNanos && entry.generation >= generation.get()) {
+                entry.accessed = now;
+                hits.increment();
+                return entry.value;
+            }
+            entries.remove(key, entry);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Add a value to the cache.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    void put(final K key, final V value) {
+        put(key, value, generation.get());
+    }
+
+    /**
+     * Add a value that was computed in a given generation.
+     *
+     * @param key the key
+     * @param value the value
+     * @param gen the generation of the value
+     */
+    void put(final K key, final V value, final long gen) {
+        put(key, value, gen, stamp());
+    }
+
+    /**
+     * Add a value that was loaded after the given stamp was taken.
+     *
+     * @param key the key
+     * @param value the value
+     * @param gen the generation of the value
+     * @param stamp the result of {@link #stamp} before the value was loaded
+     */
+    void put(final K key, final V value, final long gen, final long stamp) {
+        if (maxSize == 0 || ttlNanos == 0 || gen < generation.get()) {
+            return;
+        }
+        final long current = invalidations.get();
+        if (isInvalidated(key, value, stamp, current)) {
+            return;
+        }
+        final Entry<V> entry = new Entry<>(value, nanoTime(), gen);
+        entries.put(key, entry);
+        if (isInvalidated(key, value, current, invalidations.get())) {
+            // An invalidation ran concurrently with this write and may have missed it
+            entries.remove(key, entry);
+        } else if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Remove a single entry.
+     *
+     * @param key the key
+     */
+    void invalidate(final K key) {
+        record(key::equals, value -> false);
+        entries.remove(key);
+        loading.remove(key);
+    }
+
+    /**
+     * Remove a single entry that has been superseded, rather than made stale by a change.
+     *
+     * <p>Unlike {@link #invalidate}, this does not affect values being loaded concurrently.</p>
+     *
+     * @param key the key
+     */
+    void remove(final K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Remove all entries whose key or value matches the given predicates.
+     *
+     * @param keyPredicate a test on the key
+     * @param valuePredicate a test on the value
+     * @return the keys that were removed
+     */
+    List<K> invalidateIf(final Predicate<? super K> keyPredicate, final Predicate<? super V> valuePredicate) {
+        final List<K> removed = new ArrayList<>();
+        record(keyPredicate, valuePredicate);
+        loading.clear();
+        entries.entrySet().removeIf(e -> {
+            if (keyPredicate.test(e.getKey()) || valuePredicate.test(e.getValue().value)) {
+                removed.add(e.getKey());
+                return true;
+            }
+            return false;
+        });
+        return removed;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void invalidateAll() {
+        record(key -> true, value -> true);
+        loading.clear();
+        entries.clear();
+    }
+
+    /**
+     * List the live values, most recently accessed first.
+     *
+     * @param limit the maximum number of values to return
+     * @return the values
+     */
+    List<V> values(final int limit) {
+        final long now = nanoTime();
+        final List<Entry<V>> live = new ArrayList<>();
+        for (final Entry<V> entry : entries.values()) {
+            if (now - entry.created < ttlNanos && entry.generation >= generation.get()) {
+                live.add(entry);
+            }
+        }
+        live.sort((a, b) -> Long.signum(b.accessed - a.accessed));
+        final List<V> values = new ArrayList<>(Math.min(limit, live.size()));
+        for (int i = 0; i < live.size() && i < limit; ++i) {
+            values.add(live.get(i).value);
+        }
+        return values;
+    }
+
+    /**
+     * @return a value that changes whenever an entry is invalidated
+     */
+    long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Move to a new generation, dropping all entries from earlier ones.
+     *
+     * @param gen the new generation
+     */
+    void advance(final long gen) {
+        if (generation.getAndAccumulate(gen, Math::max) < gen) {
+            loading.clear();
+            entries.clear();
+        }
+    }
+
+    boolean isEnabled() {
+        return maxSize > 0 && ttlNanos > 0;
+    }
+
+    long size() {
+        return entries.size();
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private void record(final Predicate<? super K> keyPredicate, final Predicate<? super V> valuePredicate) {
+        final long sequence = invalidations.incrementAndGet();
+        log.set((int) (sequence % INVALIDATION_LOG_SIZE), new Invalidation<>(sequence, keyPredicate,
+                    valuePredicate));
+    }
+
+    private boolean isInvalidated(final K key, final V value, final long from, final long to) {
+        if (to - from >= INVALIDATION_LOG_SIZE) {
+            return true;
+        }
+        for (long sequence = from + 1; sequence <= to; ++sequence) {
+            final Invalidation<K, V> invalidation = log.get((int) (sequence % INVALIDATION_LOG_SIZE));
+            // An entry that was overwritten, or is not written yet, is assumed to cover the key
+            if (invalidation == null || invalidation.sequence != sequence || invalidation.keys.test(key) ||
+                    invalidation.values.test(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void evict() {
+        final long now = nanoTime();
+        while (entries.size() > maxSize) {
+            K oldest = null;
+            long oldestAccess = now;
+            boolean expired = false;
+            for (int i = 0; i < EVICTION_SAMPLE; ++i) {
+                if (sweep == null || !sweep.hasNext()) {
+                    sweep = entries.entrySet().iterator();
+                    if (!sweep.hasNext()) {
+                        return;
+                    }
+                }
+                final Map.Entry<K, Entry<V>> e = sweep.next();
+                final Entry<V> entry = e.getValue();
+                if (now - entry.created >= ttlNanos || entry.generation < generation.get()) {
+                    expired |= entries.remove(e.getKey(), entry);
+                } else if (oldest == null || entry.accessed - oldestAccess < 0) {
+                    oldest = e.getKey();
+                    oldestAccess = entry.accessed;
+                }
+            }
+            if (!expired && oldest != null && entries.remove(oldest) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Invalidation<K, V> {
+        private final long sequence;
+        private final Predicate<? super K> keys;
+        private final Predicate<? super V> values;
+
+        private Invalidation(final long sequence, final Predicate<? super K> keys, final Predicate<? super V> values) {
+            this.sequence = sequence;
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    private static final class Load<V> extends CompletableFuture<V> {
+        private final Thread owner = Thread.currentThread();
+        private final long generation;
+
+        private Load(final long generation) {
+            this.generation = generation;
+        }
+
+        private V await() {
+            try {
+                return join();
+            } catch (final CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                } else if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                throw ex;
+            }
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long created;
+        private final long generation;
+        private volatile long accessed;
+
+        private Entry(final V value, final long created, final long generation) {
+            this.value = value;
+            this.created = created;
+            this.generation = generation;
+            this.accessed = created;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A bounded cache of group memberships, keyed by agent.
+ *
+ * <p>Each entry holds the full set of groups to which an agent belongs as a {@link GroupSet},
+ * which also keeps the dictionary identifiers of the groups for matching against ACLs. If nested groups
+ * are expanded, the groups of each group are resolved once, when the entry is loaded, and
+ * folded into the agent's set.</p>
+ *
+ * @author agent
+ */
+public class GroupCache {
+
+    private final ExpiringCache<IRI, Set<IRI>> cache;
+
+    private final boolean expandNested;
+
+    /**
+     * Create a group cache that does not expand nested groups.
+     *
+     * @param maxSize the maximum number of agents to hold
+     * @param ttl the time-to-live of each cached membership
+     * @param unit the unit of the ttl value
+     */
+    public GroupCache(final long maxSize, final long ttl, final TimeUnit unit) {
+        this(maxSize, ttl, unit, false);
+    }
+
+    /**
+     * Create a group cache.
+     *
+     * @param maxSize the maximum number of agents to hold
+     * @param ttl the time-to-live of each cached membership
+     * @param unit the unit of the ttl value
+     * @param expandNested whether to include the groups to which an agent's groups belong
+     */
+    public GroupCache(final long maxSize, final long ttl, final TimeUnit unit, final boolean expandNested) {
+        this.cache = new ExpiringCache<>(maxSize, ttl, unit);
+        this.expandNested = expandNested;
+    }
+
+    /**
+     * Drop the cached membership of an agent, along with that of every agent that belongs
+     * to it, if it is a group.
+     *
+     * @param agent the identifier of an agent or group
+     */
+    public void invalidate(final IRI agent) {
+        invalidateMembers(agent);
+    }
+
+    /**
+     * Drop all cached memberships.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the number of agents whose memberships are cached
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of lookups that were served from the cache
+     */
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * @return the number of lookups that required an AgentService call
+     */
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * @return whether nested groups are expanded
+     */
+    public boolean isExpandNested() {
+        return expandNested;
+    }
+
+    /**
+     * Fetch the groups of an agent, loading them if necessary.
+     *
+     * @param agent the agent
+     * @param loader a function that loads the direct groups of an agent or group
+     * @param generation the generation of the AgentService binding
+     * @return the groups
+     */
+    Set<IRI> get(final IRI agent, final Function<IRI, List<IRI>> loader, final long generation) {
+        return cache.get(agent, key -> load(key, loader), generation);
+    }
+
+    void advance(final long generation) {
+        cache.advance(generation);
+    }
+
+    /**
+     * Drop the memberships that depend on an agent or group.
+     *
+     * @param agent the identifier of an agent or group
+     * @return the agents whose memberships were dropped
+     */
+    List<IRI> invalidateMembers(final IRI agent) {
+        requireNonNull(agent, "A non-null agent must be provided!");
+        return cache.invalidateIf(agent::equals, groups -> groups.contains(agent));
+    }
+
+    private Set<IRI> load(final IRI agent, final Function<IRI, List<IRI>> loader) {
+        final Collection<IRI> direct = loader.apply(agent);
+        final Set<IRI> groups = new HashSet<>(direct);
+        if (expandNested) {
+            final Deque<IRI> pending = new ArrayDeque<>(groups);
+            while (!pending.isEmpty()) {
+                for (final IRI group : loader.apply(pending.pop())) {
+                    if (!group.equals(agent) && groups.add(group)) {
+                        pending.push(group);
+                    }
+                }
+            }
+        }
+        return new GroupSet(groups);
+    }
+}
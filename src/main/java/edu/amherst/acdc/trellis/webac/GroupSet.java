@@ -0,0 +1,99 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Collections.unmodifiableSet;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * An immutable set of the groups to which an agent belongs, along with their
+ * {@link IriDictionary} identifiers.
+ *
+ * <p>The identifiers are looked up once per dictionary and then shared by every decision
+ * against an ACL compiled with that dictionary. If some of the groups were absent, they
+ * are looked up again once the dictionary has grown, since a newly compiled ACL may have
+ * added them.</p>
+ *
+ * @author agent
+ */
+final class GroupSet extends AbstractSet<IRI> {
+
+    private final Set<IRI> groups;
+
+    private volatile Ids ids;
+
+    /**
+     * Create a group set.
+     *
+     * @param groups the groups
+     */
+    GroupSet(final Collection<IRI> groups) {
+        this.groups = unmodifiableSet(new HashSet<>(groups));
+    }
+
+    @Override
+    public Iterator<IRI> iterator() {
+        return groups.iterator();
+    }
+
+    @Override
+    public int size() {
+        return groups.size();
+    }
+
+    @Override
+    public boolean contains(final Object group) {
+        return groups.contains(group);
+    }
+
+    /**
+     * Find the identifiers of these groups, leaving out any that are absent.
+     *
+     * @param dictionary the dictionary
+     * @return the identifiers
+     */
+    int[] getIds(final IriDictionary dictionary) {
+        final Ids current = ids;
+        if (current != null && current.dictionary == dictionary &&
+                (current.values.length == groups.size() || current.size == dictionary.size())) {
+            return current.values;
+        }
+        // Read the size first, so that an IRI interned during the lookup forces another one later
+        final int size = dictionary.size();
+        final int[] values = dictionary.lookup(groups);
+        ids = new Ids(dictionary, values, size);
+        return values;
+    }
+
+    private static final class Ids {
+        private final IriDictionary dictionary;
+        private final int[] values;
+        private final int size;
+
+        private Ids(final IriDictionary dictionary, final int[] values, final int size) {
+            this.dictionary = dictionary;
+            this.values = values;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values.
+ *
+ * <p>Values are counted in power-of-two buckets, so recording a value costs a couple of
+ * atomic increments and the reported percentiles are accurate to within a factor of two.</p>
+ *
+ * @author agent
+ */
+public final class Histogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * Record a value.
+     *
+     * @param value the value; negative values are counted as zero
+     */
+    public void record(final long value) {
+        final long v = Math.max(value, 0L);
+        buckets.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of all recorded values
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return the largest recorded value
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the mean of the recorded values
+     */
+    public double getMean() {
+        final long n = getCount();
+        return n == 0 ? 0.0 : (double) getSum() / n;
+    }
+
+    /**
+     * Estimate a percentile.
+     *
+     * @param percentile a value between 0 and 100
+     * @return an upper bound on the value at the percentile
+     */
+    public long getPercentile(final double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100!");
+        }
+        long total = 0L;
+        for (int i = 0; i < buckets.length(); ++i) {
+            total += buckets.get(i);
+        }
+        final long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0L;
+        for (int i = 0; i < buckets.length(); ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return 0L;
+    }
+
+    private static int bucket(final long value) {
+        return value == 0 ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long upperBound(final int bucket) {
+        return (1L << (bucket + 1)) - 1;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Collections.unmodifiableMap;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * An in-memory metrics sink that aggregates authorization traces into histograms.
+ *
+ * <p>Along with the overall distributions, decision latency is also tracked per ACL, which
+ * shows the subtrees whose authorization is slow, and grants and denials are counted per
+ * requested mode. Only a bounded number of ACLs are tracked: once the limit is reached, an
+ * ACL seen for the first time replaces the least used of a few tracked ACLs, visited in a
+ * sweep that cycles through all of them, so the busiest ACLs tend to stay.</p>
+ *
+ * @author agent
+ */
+public class HistogramMetrics implements AuthorizationMetrics {
+
+    private static final int DEFAULT_MAX_ACLS = 1000;
+
+    private static final int EVICTION_SAMPLE = 16;
+
+    private final Histogram latency = new Histogram();
+
+    private final Histogram lookups = new Histogram();
+
+    private final Histogram depth = new Histogram();
+
+    private final Histogram aclSize = new Histogram();
+
+    private final Histogram groupResolution = new Histogram();
+
+    private final Map<IRI, Histogram> aclLatency = new ConcurrentHashMap<>();
+
+    private final Map<IRI, LongAdder> grants = new ConcurrentHashMap<>();
+
+    private final Map<IRI, LongAdder> denials = new ConcurrentHashMap<>();
+
+    private final LongAdder granted = new LongAdder();
+
+    private final LongAdder denied = new LongAdder();
+
+    private final int maxAcls;
+
+    private Iterator<Map.Entry<IRI, Histogram>> sweep;
+
+    /**
+     * Create a metrics sink that tracks the latency of up to 1000 ACLs.
+     */
+    public HistogramMetrics() {
+        this(DEFAULT_MAX_ACLS);
+    }
+
+    /**
+     * Create a metrics sink.
+     *
+     * @param maxAcls the maximum number of ACLs whose latency is tracked individually
+     */
+    public HistogramMetrics(final int maxAcls) {
+        if (maxAcls < 0) {
+            throw new IllegalArgumentException("The maximum number of ACLs must not be negative!");
+        }
+        this.maxAcls = maxAcls;
+    }
+
+    @Override
+    public void record(final AuthorizationTrace trace) {
+        latency.record(trace.getDuration());
+        lookups.record(trace.getResourceLookups());
+        depth.record(trace.getAncestorDepth());
+        aclSize.record(trace.getAclSize());
+        groupResolution.record(trace.getGroupResolutionTime());
+        trace.getAcl().map(this::aclHistogram).ifPresent(histogram -> histogram.record(trace.getDuration()));
+        if (trace.isGranted()) {
+            granted.increment();
+            trace.getMode().ifPresent(mode -> grants.computeIfAbsent(mode, k -> new LongAdder()).increment());
+        } else {
+            denied.increment();
+            trace.getMode().ifPresent(mode -> denials.computeIfAbsent(mode, k -> new LongAdder()).increment());
+        }
+    }
+
+    /**
+     * @return the distribution of decision latency, in nanoseconds
+     */
+    public Histogram getDecisionLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the distribution of ResourceService lookups per decision
+     */
+    public Histogram getResourceLookups() {
+        return lookups;
+    }
+
+    /**
+     * @return the distribution of ancestor-walk depth per decision
+     */
+    public Histogram getAncestorDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the distribution of the size of the governing ACL
+     */
+    public Histogram getAclSize() {
+        return aclSize;
+    }
+
+    /**
+     * @return the distribution of group-resolution latency, in nanoseconds
+     */
+    public Histogram getGroupResolutionLatency() {
+        return groupResolution;
+    }
+
+    /**
+     * @return the decision latency for each tracked ACL, in nanoseconds
+     */
+    public Map<IRI, Histogram> getDecisionLatencyByAcl() {
+        return unmodifiableMap(aclLatency);
+    }
+
+    private Histogram aclHistogram(final IRI acl) {
+        final Histogram histogram = aclLatency.get(acl);
+        if (histogram != null || maxAcls == 0) {
+            return histogram;
+        }
+        synchronized (aclLatency) {
+            while (aclLatency.size() >= maxAcls && !aclLatency.containsKey(acl)) {
+                evictAcl();
+            }
+            return aclLatency.computeIfAbsent(acl, k -> new Histogram());
+        }
+    }
+
+    private void evictAcl() {
+        IRI quietest = null;
+        long quietestCount = Long.MAX_VALUE;
+        for (int i = 0; i < EVICTION_SAMPLE; ++i) {
+            if (sweep == null || !sweep.hasNext()) {
+                sweep = aclLatency.entrySet().iterator();
+                if (!sweep.hasNext()) {
+                    return;
+                }
+            }
+            final Map.Entry<IRI, Histogram> e = sweep.next();
+            if (e.getValue().getCount() < quietestCount) {
+                quietest = e.getKey();
+                quietestCount = e.getValue().getCount();
+            }
+        }
+        aclLatency.remove(quietest);
+    }
+
+    /**
+     * @return the number of checks that granted access
+     */
+    public long getGrantCount() {
+        return granted.sum();
+    }
+
+    /**
+     * @return the number of checks that denied access
+     */
+    public long getDenyCount() {
+        return denied.sum();
+    }
+
+    /**
+     * @param mode the requested mode
+     * @return the number of checks for the mode that granted access
+     */
+    public long getGrantCount(final IRI mode) {
+        final LongAdder count = grants.get(mode);
+        return count == null ? 0L : count.sum();
+    }
+
+    /**
+     * @param mode the requested mode
+     * @return the number of checks for the mode that denied access
+     */
+    public long getDenyCount(final IRI mode) {
+        final LongAdder count = denials.get(mode);
+        return count == null ? 0L : count.sum();
+    }
+}
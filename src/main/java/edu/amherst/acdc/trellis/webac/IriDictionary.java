@@ -0,0 +1,176 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Arrays.copyOf;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A dictionary that assigns a dense int identifier to each IRI used in a set of ACLs.
+ *
+ * <p>IRIs are keyed on their string form, so a lookup does not depend on the {@code equals}
+ * and {@code hashCode} of any particular RDF implementation, and the first instance seen
+ * for each IRI is retained and shared. Only the agent, group, accessTo, accessToClass and
+ * mode values read from authorizations are interned; the IRIs of a request are merely looked
+ * up, since one that is absent from the dictionary cannot match any authorization.</p>
+ *
+ * <p>Identifiers are never reassigned, so a dictionary only grows. Each compiled ACL keeps
+ * a reference to the dictionary its identifiers belong to, and the owner of a dictionary
+ * replaces it with an empty one once it {@link #isFull is full}; the old one is reclaimed
+ * when the last ACL compiled with it is dropped.</p>
+ *
+ * @author agent
+ */
+final class IriDictionary {
+
+    static final int ABSENT = -1;
+
+    static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    private final int maxSize;
+
+    private volatile IRI[] iris = new IRI[256];
+
+    private volatile int size;
+
+    /**
+     * Create a dictionary that is full at {@link #DEFAULT_MAX_SIZE} IRIs.
+     */
+    IriDictionary() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a dictionary.
+     *
+     * @param maxSize the number of IRIs at which the dictionary is full
+     */
+    IriDictionary(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Find or assign the identifier of an IRI.
+     *
+     * @param iri the IRI
+     * @return the identifier
+     */
+    int intern(final IRI iri) {
+        final Integer id = ids.get(iri.getIRIString());
+        if (id != null && id < size) {
+            return id;
+        }
+        synchronized (lock) {
+            final Integer existing = ids.get(iri.getIRIString());
+            if (existing != null) {
+                return existing;
+            }
+            final int next = size;
+            if (next == iris.length) {
+                iris = copyOf(iris, next * 2);
+            }
+            iris[next] = iri;
+            ids.put(iri.getIRIString(), next);
+            // Publish the size last: once it is read, every IRI it counts can be looked up
+            size = next + 1;
+            return next;
+        }
+    }
+
+    /**
+     * Find the identifier of an IRI without assigning one.
+     *
+     * @param iri the IRI, may be null
+     * @return the identifier, or {@link #ABSENT}
+     */
+    int lookup(final IRI iri) {
+        if (iri == null) {
+            return ABSENT;
+        }
+        final Integer id = ids.get(iri.getIRIString());
+        return id == null ? ABSENT : id;
+    }
+
+    /**
+     * Find the identifiers of a collection of IRIs, leaving out any that are absent.
+     *
+     * @param values the IRIs
+     * @return the identifiers
+     */
+    int[] lookup(final Iterable<IRI> values) {
+        int[] found = new int[8];
+        int count = 0;
+        for (final IRI iri : values) {
+            final int id = lookup(iri);
+            if (id != ABSENT) {
+                if (count == found.length) {
+                    found = copyOf(found, count * 2);
+                }
+                found[count++] = id;
+            }
+        }
+        return copyOf(found, count);
+    }
+
+    /**
+     * @param id an identifier returned by {@link #intern}
+     * @return the IRI
+     */
+    IRI get(final int id) {
+        // Read the size first: an identifier that has been published is always within the array that follows
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown IRI identifier: " + id);
+        }
+        return iris[id];
+    }
+
+    /**
+     * @param values identifiers returned by {@link #intern}
+     * @return the IRIs
+     */
+    IRI[] get(final int[] values) {
+        final IRI[] result = new IRI[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            result[i] = get(values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of IRIs in the dictionary
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return whether the dictionary has reached its maximum size and should be replaced
+     */
+    boolean isFull() {
+        return size >= maxSize;
+    }
+}
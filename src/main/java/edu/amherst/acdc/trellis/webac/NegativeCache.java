@@ -0,0 +1,138 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A bounded cache of negative results, meant to be held for a short time.
+ *
+ * <p>Two kinds of result are held: identifiers that either do not exist or are not governed
+ * by any ACL, and agents that are granted no access mode at all by a particular ACL. Repeated
+ * probes of missing or forbidden resources are then answered without reaching the backend.
+ * Entries are dropped when the resources they depend on, or the agent, are invalidated.</p>
+ *
+ * <p>A WebAC service only caches negative results if it is given an enabled NegativeCache.
+ * It must then be notified of created resources as well, or a resource that is created
+ * within the time-to-live of an entry is still reported as missing.</p>
+ *
+ * @author agent
+ */
+public class NegativeCache {
+
+    private final ExpiringCache<IRI, Boolean> missing;
+
+    private final ExpiringCache<DecisionCache.Key, DecisionCache.Decision> denied;
+
+    /**
+     * Create a negative cache.
+     *
+     * @param maxSize the maximum number of entries to hold for each kind of result
+     * @param ttl the time-to-live of each entry
+     * @param unit the unit of the ttl value
+     */
+    public NegativeCache(final long maxSize, final long ttl, final TimeUnit unit) {
+        this.missing = new ExpiringCache<>(maxSize, ttl, unit);
+        this.denied = new ExpiringCache<>(maxSize, ttl, unit);
+    }
+
+    /**
+     * Drop every entry that depends on the given resource.
+     *
+     * @param identifier the identifier of a created, modified or deleted resource
+     */
+    public void invalidate(final IRI identifier) {
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        final String prefix = identifier.getIRIString() + "/";
+        missing.invalidateIf(id -> id.equals(identifier) || id.getIRIString().startsWith(prefix), x -> false);
+        denied.invalidateIf(key -> key.dependsOn(identifier), decision -> decision.dependsOn(identifier));
+    }
+
+    /**
+     * Drop every denial recorded for, or on behalf of, the given agent.
+     *
+     * @param agent the agent identifier
+     */
+    public void invalidateAgent(final IRI agent) {
+        requireNonNull(agent, "A non-null agent must be provided!");
+        denied.invalidateIf(key -> key.isFor(agent), decision -> decision.usesGroup(agent));
+    }
+
+    /**
+     * Drop all entries.
+     */
+    public void invalidateAll() {
+        missing.invalidateAll();
+        denied.invalidateAll();
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public long size() {
+        return missing.size() + denied.size();
+    }
+
+    /**
+     * @return the number of checks that were answered from the cache
+     */
+    public long getHitCount() {
+        return missing.getHitCount() + denied.getHitCount();
+    }
+
+    /**
+     * @return the number of checks that were not answered from the cache
+     */
+    public long getMissCount() {
+        return missing.getMissCount() + denied.getMissCount();
+    }
+
+    boolean isMissing(final IRI identifier) {
+        return missing.isEnabled() && missing.getIfPresent(identifier) != null;
+    }
+
+    void putMissing(final IRI identifier, final long generation, final long stamp) {
+        missing.put(identifier, Boolean.TRUE, generation, stamp);
+    }
+
+    long missingStamp() {
+        return missing.stamp();
+    }
+
+    DecisionCache.Decision getDenied(final DecisionCache.Key key) {
+        return denied.isEnabled() ? denied.getIfPresent(key) : null;
+    }
+
+    void putDenied(final DecisionCache.Key key, final DecisionCache.Decision decision, final long generation,
+            final long stamp) {
+        if (decision.getModes().isEmpty()) {
+            denied.put(key, decision, generation, stamp);
+        }
+    }
+
+    long deniedStamp() {
+        return denied.stamp();
+    }
+
+    void advance(final long generation) {
+        missing.advance(generation);
+        denied.advance(generation);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.Session;
+import org.apache.commons.rdf.api.IRI;
+
+/**
+ * A request-scoped memo of ResourceService and AgentService lookups.
+ *
+ * <p>A context belongs to the thread that opened it. While it is open, every access check
+ * made on that thread with its session reuses the resources and group memberships already
+ * loaded, including resources that were not found. Other threads, even with the same session,
+ * never see it. The memo is emptied whenever the service is notified of a change, and a
+ * context that is never closed stops being used once it is older than {@link #MAX_AGE_SECONDS},
+ * so the memo cannot serve data that is older than the request.</p>
+ *
+ * @author agent
+ */
+public final class RequestContext implements AutoCloseable {
+
+    /**
+     * The longest time for which a context is used.
+     */
+    public static final long MAX_AGE_SECONDS = 30L;
+
+    private final Session session;
+
+    private final RequestContext previous;
+
+    private final LongSupplier changes;
+
+    private final Consumer<RequestContext> onClose;
+
+    private final long expires = nanoTime() + SECONDS.toNanos(MAX_AGE_SECONDS);
+
+    private final Map<IRI, Optional<Resource>> resources = new HashMap<>();
+
+    private final Map<IRI, Set<IRI>> groups = new HashMap<>();
+
+    private int references = 1;
+
+    private long seen;
+
+    /**
+     * Create a request context.
+     *
+     * @param session the session
+     * @param previous the context that was open on this thread before, may be null
+     * @param changes a counter of the changes reported to the service
+     * @param onClose called once the last reference to the context is closed
+     */
+    RequestContext(final Session session, final RequestContext previous, final LongSupplier changes,
+            final Consumer<RequestContext> onClose) {
+        this.session = session;
+        this.previous = previous;
+        this.changes = changes;
+        this.onClose = onClose;
+        this.seen = changes.getAsLong();
+    }
+
+    /**
+     * @return the session to which this context is bound
+     */
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     * @return the number of distinct resources looked up in this context
+     */
+    public int size() {
+        return resources.size();
+    }
+
+    /**
+     * Release this reference to the context; this must be called on the thread that opened it.
+     */
+    @Override
+    public void close() {
+        if (references > 0 && --references == 0) {
+            onClose.accept(this);
+        }
+    }
+
+    /**
+     * Take another reference to an open context.
+     */
+    void retain() {
+        references += 1;
+    }
+
+    /**
+     * @return whether the context is still open and young enough to be used
+     */
+    boolean isOpen() {
+        return references > 0 && nanoTime() - expires < 0;
+    }
+
+    /**
+     * @return the context that was open on this thread before this one, or null
+     */
+    RequestContext getPrevious() {
+        return previous;
+    }
+
+    Optional<Resource> find(final IRI identifier, final Function<IRI, Optional<Resource>> loader) {
+        sync();
+        final Optional<Resource> cached = resources.get(identifier);
+        if (cached != null) {
+            return cached;
+        }
+        final Optional<Resource> resource = loader.apply(identifier);
+        resources.put(identifier, resource);
+        return resource;
+    }
+
+    Set<IRI> getGroups(final IRI agent, final Function<IRI, Set<IRI>> loader) {
+        sync();
+        final Set<IRI> cached = groups.get(agent);
+        if (cached != null) {
+            return cached;
+        }
+        final Set<IRI> memberships = loader.apply(agent);
+        groups.put(agent, memberships);
+        return memberships;
+    }
+
+    private void sync() {
+        final long current = changes.getAsLong();
+        if (current != seen) {
+            resources.clear();
+            groups.clear();
+            seen = current;
+        }
+    }
+}
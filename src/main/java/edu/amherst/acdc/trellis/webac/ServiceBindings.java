@@ -0,0 +1,82 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import java.util.Optional;
+
+import edu.amherst.acdc.trellis.spi.AgentService;
+import edu.amherst.acdc.trellis.spi.ResourceService;
+
+/**
+ * An immutable snapshot of the services bound to the WebAC service.
+ *
+ * <p>Each access check reads one snapshot and uses it throughout, so a concurrent bind or
+ * unbind never leaves a check with a mix of old and new services. The generation increases
+ * whenever the ResourceService or AgentService changes; cached values are tagged with the
+ * generation they were computed in, so values from an earlier backend are never served.</p>
+ *
+ * @author agent
+ */
+final class ServiceBindings {
+
+    static final ServiceBindings EMPTY = new ServiceBindings(null, null, null, 0L);
+
+    private final ResourceService resourceService;
+
+    private final AgentService agentService;
+
+    private final AclInheritanceIndex index;
+
+    private final long generation;
+
+    private ServiceBindings(final ResourceService resourceService, final AgentService agentService,
+            final AclInheritanceIndex index, final long generation) {
+        this.resourceService = resourceService;
+        this.agentService = agentService;
+        this.index = index;
+        this.generation = generation;
+    }
+
+    Optional<ResourceService> getResourceService() {
+        return Optional.ofNullable(resourceService);
+    }
+
+    Optional<AgentService> getAgentService() {
+        return Optional.ofNullable(agentService);
+    }
+
+    AclInheritanceIndex getIndex() {
+        return index;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    ServiceBindings withResourceService(final ResourceService service) {
+        return service == resourceService ? this :
+            new ServiceBindings(service, agentService, index, generation + 1);
+    }
+
+    ServiceBindings withAgentService(final AgentService service) {
+        return service == agentService ? this :
+            new ServiceBindings(resourceService, service, index, generation + 1);
+    }
+
+    ServiceBindings withIndex(final AclInheritanceIndex idx) {
+        return idx == index ? this : new ServiceBindings(resourceService, agentService, idx, generation);
+    }
+}
@@ -15,19 +15,46 @@
  */
 package edu.amherst.acdc.trellis.webac;
 
+import static java.lang.System.nanoTime;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.Objects.requireNonNull;
 import static java.util.Optional.ofNullable;
+import static java.util.concurrent.CompletableFuture.allOf;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static java.util.stream.Stream.empty;
-import static java.util.stream.Stream.of;
-import static edu.amherst.acdc.trellis.api.Resource.TripleContext.USER_MANAGED;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import edu.amherst.acdc.trellis.api.Resource;
@@ -37,7 +64,6 @@ import edu.amherst.acdc.trellis.spi.Authorization;
 import edu.amherst.acdc.trellis.spi.ResourceService;
 import edu.amherst.acdc.trellis.spi.Session;
 import edu.amherst.acdc.trellis.vocabulary.ACL;
-import org.apache.commons.rdf.api.Graph;
 import org.apache.commons.rdf.api.IRI;
 import org.apache.commons.rdf.api.RDF;
 import org.slf4j.Logger;
@@ -46,7 +72,7 @@ import org.slf4j.Logger;
  *
  * @author acoburn
  */
-public class WebACService implements AccessControlService {
+public class WebACService implements AccessControlService, AccessControlListener {
 
     private static final Logger LOGGER = getLogger(WebACService.class);
 
@@ -64,70 +90,196 @@ public class WebACService implements AccessControlService {
     private static Predicate<Resource> isAuthorization = resource ->
         resource.getTypes().anyMatch(ACL.Authorization::equals);
 
-    private static Predicate<Authorization> hasAccess(final Resource resource) {
-        return authorization -> authorization.getAccessTo().contains(resource.getIdentifier()) ||
-                resource.getTypes().anyMatch(authorization.getAccessToClass()::contains);
+    private static EffectiveAcl effectiveAcl(final Resource resource) {
+        return new EffectiveAcl(resource.getIdentifier(), resource.getTypes().collect(toList()),
+                resource.getAccessControl().get());
     }
 
-    private ResourceService service;
+    private final AuthorizationCache cache;
 
-    private AgentService agentSvc;
+    private final AclResolutionCache resolutions;
+
+    private final DecisionCache decisions;
+
+    private final GroupCache groupCache;
+
+    private final AdminCache admins;
+
+    private final NegativeCache negatives;
+
+    private final ExecutionStrategy executor;
+
+    private final AuthorizationMetrics metrics;
+
+    private final ThreadLocal<RequestContext> contexts = new ThreadLocal<>();
+
+    private final AtomicLong changes = new AtomicLong();
+
+    private final AtomicReference<ServiceBindings> bindings = new AtomicReference<>(ServiceBindings.EMPTY);
+
+    private final AtomicReference<IriDictionary> dictionary = new AtomicReference<>(new IriDictionary());
+
+    /**
+     * Create a WebAC service without caching.
+     *
+     * <p>This is the constructor used by the service loader, where nothing reports changes
+     * to the service, so every check reads the current state of the backend. A service with
+     * caching is created with {@link #builder()}; it must be notified of every relevant change
+     * through the {@link AccessControlListener} methods.</p>
+     *
+     * <p>Every lookup runs on the calling thread, so that a service created here owns no threads
+     * that would need to be shut down.</p>
+     */
+    public WebACService() {
+        this(builder());
+    }
+
+    private WebACService(final Builder builder) {
+        this.cache = builder.cache;
+        this.resolutions = builder.resolutions;
+        this.decisions = builder.decisions;
+        this.groupCache = builder.groups;
+        this.admins = builder.admins;
+        this.negatives = builder.negatives;
+        this.executor = builder.executor;
+        this.metrics = builder.metrics;
+    }
+
+    /**
+     * Create a builder for a WebAC service.
+     *
+     * <p>Every cache is disabled, lookups run on the calling thread and no traces are reported
+     * unless the builder is told otherwise.</p>
+     *
+     * @return the builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
 
     @Override
-    public synchronized void bind(final ResourceService service) {
-        requireNonNull(service, "A non-null ResourceService must be provided!");
-        this.service = service;
+    public void invalidate(final IRI identifier) {
+        // The index is invalidated first, so that nothing resolved from it afterwards is stale
+        ofNullable(bindings.get().getIndex()).ifPresent(idx -> idx.invalidate(identifier));
+        cache.invalidate(identifier);
+        resolutions.invalidate(identifier);
+        decisions.invalidate(identifier);
+        negatives.invalidate(identifier);
+        changes.incrementAndGet();
     }
 
     @Override
-    public synchronized void unbind(final ResourceService service) {
-        if (this.service == service) {
-            this.service = null;
+    public void invalidateAgent(final IRI agent) {
+        decisions.invalidateAgent(agent);
+        negatives.invalidateAgent(agent);
+        groupCache.invalidateMembers(agent).forEach(member -> {
+            decisions.invalidateAgent(member);
+            negatives.invalidateAgent(member);
+        });
+        admins.invalidate(agent);
+        changes.incrementAndGet();
+    }
+
+    /**
+     * Open a request-scoped lookup context for a session.
+     *
+     * <p>Until the context is closed, access checks made with this session on the calling thread
+     * look up each resource and each agent's groups at most once. The context must be closed on
+     * the same thread, and a context that is not closed expires on its own. Opening a context on
+     * a thread that already has one open for the same session returns the open context, which is
+     * then discarded once every caller has closed it.</p>
+     *
+     * @param session the session
+     * @return the context
+     */
+    public RequestContext openContext(final Session session) {
+        requireNonNull(session, "A non-null session must be provided!");
+        final RequestContext current = getContext(session);
+        if (current != null) {
+            current.retain();
+            return current;
         }
+        final RequestContext created = new RequestContext(session, currentContext(), changes::get, context -> {
+            if (contexts.get() == context) {
+                setContext(context.getPrevious());
+            }
+        });
+        contexts.set(created);
+        return created;
+    }
+
+    @Override
+    public void bind(final ResourceService service) {
+        requireNonNull(service, "A non-null ResourceService must be provided!");
+        rebind(current -> current.withResourceService(service));
+    }
+
+    @Override
+    public void unbind(final ResourceService service) {
+        rebind(current -> current.getResourceService().filter(svc -> svc == service).isPresent() ?
+                current.withResourceService(null) : current);
     }
 
     @Override
-    public synchronized void bind(final AgentService service) {
+    public void bind(final AgentService service) {
         requireNonNull(service, "A non-null AgentService must be provided!");
-        this.agentSvc = service;
+        rebind(current -> current.withAgentService(service));
     }
 
     @Override
-    public synchronized void unbind(final AgentService service) {
-        if (this.agentSvc == service) {
-            this.agentSvc = null;
-        }
+    public void unbind(final AgentService service) {
+        rebind(current -> current.getAgentService().filter(svc -> svc == service).isPresent() ?
+                current.withAgentService(null) : current);
+    }
+
+    /**
+     * Bind an ACL inheritance index, which then answers ACL resolution wherever it can.
+     *
+     * <p>The index is kept current with the resources this service reads and with the
+     * changes it is notified of through {@link #invalidate}.</p>
+     *
+     * @param index the index
+     */
+    public void bind(final AclInheritanceIndex index) {
+        requireNonNull(index, "A non-null AclInheritanceIndex must be provided!");
+        rebind(current -> current.withIndex(index));
+    }
+
+    /**
+     * Unbind an ACL inheritance index.
+     *
+     * @param index the index
+     */
+    public void unbind(final AclInheritanceIndex index) {
+        rebind(current -> current.getIndex() == index ? current.withIndex(null) : current);
+    }
+
+    /**
+     * @return the number of times the ResourceService or AgentService binding has changed
+     */
+    public long getGeneration() {
+        return bindings.get().getGeneration();
     }
 
     @Override
     public Optional<IRI> findAclFor(final Session session, final IRI identifier) {
         requireNonNull(identifier, "A non-null identifier must be provided!");
-        final Optional<Resource> resource = ofNullable(service).flatMap(svc -> svc.find(session, identifier));
-        return ofNullable(resource.flatMap(Resource::getAccessControl)
-            .orElseGet(() -> resource.flatMap(Resource::getParent).flatMap(id -> findAclFor(session, id))
-                .orElse(null)));
+        final ServiceBindings services = bindings.get();
+        return resolveAcl(services, session, identifier, resolutions.stamp(), indexStamp(services),
+                AuthorizationTrace.NONE).map(EffectiveAcl::getAcl);
     }
 
     @Override
     public Optional<Resource> findAncestorWithAccessControl(final Session session, final IRI identifier) {
         requireNonNull(identifier, "A non-null identifier must be provided!");
-        final Optional<Resource> resource = ofNullable(service).flatMap(svc -> svc.find(session, identifier));
-        return ofNullable(resource.filter(res -> res.getAccessControl().isPresent())
-                .orElseGet(() -> resource.flatMap(Resource::getParent)
-                    .flatMap(id -> findAncestorWithAccessControl(session, id)).orElse(null)));
+        return findAncestorWithAccessControl(bindings.get(), session, identifier, resolutions.stamp());
     }
 
     @Override
     public Stream<Authorization> getAuthorizations(final Session session, final IRI identifier) {
         requireNonNull(identifier, "A non-null identifier must be provided!");
-        return ofNullable(service).flatMap(svc -> svc.find(session, identifier)).map(resource ->
-            resource.getChildren().parallel().unordered().map(id -> service.find(session, id))
-                .filter(Optional::isPresent).map(Optional::get).filter(isAuthorization).flatMap(auth -> {
-                    final Graph graph = rdf.createGraph();
-                    auth.stream(USER_MANAGED).filter(triple -> triple.getPredicate().getIRIString().startsWith(ACL.uri))
-                        .forEach(graph::add);
-                    return of(new Authorization(auth.getIdentifier(), graph));
-                })).orElse(empty());
+        return getCompiledAcl(bindings.get(), session, identifier, AuthorizationTrace.NONE)
+            .map(acl -> acl.getAuthorizations(rdf)).orElse(empty());
     }
 
     @Override
@@ -136,37 +288,873 @@ public class WebACService implements AccessControlService {
         requireNonNull(identifier, "A non-null identifier must be provided!");
         requireNonNull(predicate, "A non-null predicate must be provided!");
 
-        if (ofNullable(agentSvc).filter(svc -> svc.isAdmin(session.getAgent())).isPresent()) {
-            return true;
+        final ServiceBindings services = bindings.get();
+        final AuthorizationTrace trace = AuthorizationTrace.start(metrics, identifier);
+        if (isAdmin(services, session)) {
+            return trace.finish(metrics, predicate, true);
+        }
+
+        return trace.finish(metrics, predicate, resolveTarget(services, session, identifier, trace)
+            .map(acl -> cache.isEnabled() ?
+                    cachedDecision(services, session, acl, trace).getModes().stream().anyMatch(predicate) :
+                    decideUncached(services, session, acl, predicate, trace))
+            .orElse(false));
+    }
+
+    /**
+     * Find every standard access mode granted to a session on a resource.
+     *
+     * <p>The effective ACL is resolved and evaluated once, so this is cheaper than a separate
+     * check for each mode when a request needs several of them.</p>
+     *
+     * @param session the session
+     * @param identifier the resource identifier
+     * @return the granted access modes
+     */
+    public Set<AccessMode> getAccessModes(final Session session, final IRI identifier) {
+        requireNonNull(session, "A non-null session must be provided!");
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+
+        final ServiceBindings services = bindings.get();
+        final AuthorizationTrace trace = AuthorizationTrace.start(metrics, identifier);
+        if (isAdmin(services, session)) {
+            trace.finish(metrics, mode -> false, true);
+            return EnumSet.allOf(AccessMode.class);
+        }
+
+        final int mask = resolveTarget(services, session, identifier, trace)
+            .map(acl -> cachedDecision(services, session, acl, trace).getMask()).orElse(0);
+        trace.finish(metrics, mode -> false, mask != 0);
+        return AccessMode.fromMask(mask);
+    }
+
+    /**
+     * Check access to many resources with a single session.
+     *
+     * <p>Group membership is looked up once for the whole batch, resources that share a parent
+     * share a single ancestor walk, and each distinct ACL is loaded and evaluated only once.</p>
+     *
+     * @param session the session
+     * @param identifiers the resource identifiers
+     * @param predicate a test for the requested access mode
+     * @return whether access is granted, for each identifier
+     */
+    public Map<IRI, Boolean> anyMatch(final Session session, final Collection<IRI> identifiers,
+            final Predicate<IRI> predicate) {
+        requireNonNull(identifiers, "A non-null collection of identifiers must be provided!");
+        requireNonNull(predicate, "A non-null predicate must be provided!");
+        final Map<IRI, Predicate<IRI>> checks = new LinkedHashMap<>();
+        identifiers.forEach(id -> checks.put(id, predicate));
+        return anyMatch(session, checks);
+    }
+
+    /**
+     * Check access to many resources with a single session, testing each for its own modes.
+     *
+     * <p>This shares lookups in the same way as {@link #anyMatch(Session, Collection, Predicate)},
+     * for a batch in which different resources need different access modes.</p>
+     *
+     * @param session the session
+     * @param checks a test for the requested access mode, for each resource identifier
+     * @return whether access is granted, for each identifier
+     */
+    public Map<IRI, Boolean> anyMatch(final Session session, final Map<IRI, ? extends Predicate<IRI>> checks) {
+        requireNonNull(session, "A non-null session must be provided!");
+        requireNonNull(checks, "A non-null map of checks must be provided!");
+        checks.values().forEach(predicate -> requireNonNull(predicate, "A non-null predicate must be provided!"));
+
+        final ServiceBindings services = bindings.get();
+        final Map<IRI, Boolean> results = new LinkedHashMap<>();
+        if (isAdmin(services, session)) {
+            checks.forEach((id, predicate) -> results.put(id, AuthorizationTrace.start(metrics, id)
+                        .finish(metrics, predicate, true)));
+            return results;
+        }
+
+        final Map<IRI, Optional<EffectiveAcl>> parents = new HashMap<>();
+        final Map<IRI, Optional<CompiledAcl>> acls = new HashMap<>();
+        final Map<DecisionCache.Key, DecisionCache.Decision> modes = new HashMap<>();
+        final Map<IRI, Set<IRI>> groups = new HashMap<>();
+
+        for (final Map.Entry<IRI, ? extends Predicate<IRI>> check : checks.entrySet()) {
+            final IRI identifier = check.getKey();
+            final Predicate<IRI> predicate = check.getValue();
+            final AuthorizationTrace trace = AuthorizationTrace.start(metrics, identifier);
+            final Supplier<Set<IRI>> agentGroups = () ->
+                groups.computeIfAbsent(session.getAgent(), agent -> getGroups(services, session, trace));
+            final Function<IRI, Optional<CompiledAcl>> aclLoader = id ->
+                acls.computeIfAbsent(id, aclId -> getCompiledAcl(services, session, aclId, trace));
+            final long missing = negatives.missingStamp();
+            final Optional<EffectiveAcl> effective = negatives.isMissing(identifier) ? Optional.empty() :
+                recordMissing(services, identifier, missing, services.getResourceService()
+                    .flatMap(svc -> find(svc, session, identifier, trace))
+                    .flatMap(resource -> resource.getAccessControl().isPresent() ?
+                        Optional.of(effectiveAcl(resource)) : resource.getParent().flatMap(parent ->
+                            parents.computeIfAbsent(parent, id ->
+                                resolveAcl(services, session, id, resolutions.stamp(), indexStamp(services),
+                                    trace)))));
+            results.put(identifier, trace.finish(metrics, predicate, effective.map(acl -> {
+                    final DecisionCache.Decision decision = modes.computeIfAbsent(decisionKey(session, acl), key ->
+                        getDecision(services, key, k -> decide(session, acl, agentGroups, aclLoader)));
+                    trace.acl(acl.getAcl(), decision.getAclSize());
+                    return decision.getModes().stream().anyMatch(predicate);
+                }).orElse(false)));
+        }
+        return results;
+    }
+
+    /**
+     * Load and compile ACLs ahead of use, so that the first checks against them are served
+     * from the cache.
+     *
+     * @param session the session used to read the ACLs
+     * @param acls the ACL identifiers
+     * @return the number of ACLs that were loaded
+     */
+    public int warmUp(final Session session, final Collection<IRI> acls) {
+        requireNonNull(acls, "A non-null collection of ACLs must be provided!");
+        final ServiceBindings services = bindings.get();
+        int count = 0;
+        for (final IRI acl : acls) {
+            if (getCompiledAcl(services, session, acl, AuthorizationTrace.NONE).isPresent()) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Load the ACLs in a snapshot written by {@link #saveSnapshot}.
+     *
+     * <p>Each ACL is checked against the modification time and the children of the ACL
+     * resource, so that an ACL that has not changed costs a single lookup and is cached as it
+     * is; the others are loaded again. This relies on the ResourceService updating the
+     * modification time of an ACL resource whenever one of its authorizations is added,
+     * removed or edited. With a store that does not, use {@link #warmUp(Session, Collection)}
+     * instead. A missing or unreadable snapshot is ignored.</p>
+     *
+     * @param session the session used to read the ACLs
+     * @param snapshot the snapshot file
+     * @return the number of ACLs that were loaded
+     */
+    public int warmUp(final Session session, final Path snapshot) {
+        requireNonNull(snapshot, "A non-null snapshot path must be provided!");
+        final ServiceBindings services = bindings.get();
+        final ResourceService svc = services.getResourceService().orElse(null);
+        if (svc == null || !Files.isRegularFile(snapshot)) {
+            return 0;
+        }
+
+        final List<CompiledAcl> acls;
+        try {
+            acls = AuthorizationSnapshot.read(snapshot, rdf, dictionary());
+        } catch (final UncheckedIOException | IllegalStateException ex) {
+            LOGGER.warn("Ignoring ACL snapshot: {}", ex.getMessage());
+            return 0;
+        }
+
+        int reused = 0;
+        int count = 0;
+        for (final CompiledAcl acl : acls) {
+            final long stamp = cache.stamp();
+            final Optional<Resource> resource = find(svc, session, acl.getIdentifier(), AuthorizationTrace.NONE);
+            if (resource.isPresent()) {
+                if (isCurrent(acl, resource.get())) {
+                    cache.put(acl.getIdentifier(), acl, services.getGeneration(), stamp);
+                    reused += 1;
+                } else {
+                    cache.put(acl.getIdentifier(), compileAcl(svc, session, resource.get(), AuthorizationTrace.NONE),
+                            services.getGeneration(), stamp);
+                }
+                count += 1;
+            }
+        }
+        LOGGER.info("Loaded {} ACLs from {}, {} of which were unchanged", count, snapshot, reused);
+        return count;
+    }
+
+    /**
+     * Write the most recently used ACLs to a snapshot file, for use by {@link #warmUp(Session, Path)}.
+     *
+     * @param snapshot the snapshot file
+     * @param limit the maximum number of ACLs to write
+     * @return the number of ACLs written
+     */
+    public int saveSnapshot(final Path snapshot, final int limit) {
+        requireNonNull(snapshot, "A non-null snapshot path must be provided!");
+        return AuthorizationSnapshot.write(cache.getMostRecentlyUsed(limit), snapshot);
+    }
+
+    /**
+     * Find the ACL for a resource without blocking the calling thread.
+     *
+     * @param session the session
+     * @param identifier the resource identifier
+     * @return the ACL identifier, if one exists
+     */
+    public CompletionStage<Optional<IRI>> findAclForAsync(final Session session, final IRI identifier) {
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        final ServiceBindings services = bindings.get();
+        return resolveAclAsync(services, session, identifier, resolutions.stamp(), indexStamp(services),
+                AuthorizationTrace.NONE).thenApply(acl -> acl.map(EffectiveAcl::getAcl));
+    }
+
+    /**
+     * Load the authorizations in an ACL without blocking the calling thread.
+     *
+     * <p>All of the authorization resources are fetched concurrently.</p>
+     *
+     * @param session the session
+     * @param identifier the ACL identifier
+     * @return the authorizations
+     */
+    public CompletionStage<Stream<Authorization>> getAuthorizationsAsync(final Session session,
+            final IRI identifier) {
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        return getCompiledAclAsync(bindings.get(), session, identifier, AuthorizationTrace.NONE)
+            .thenApply(acl -> acl.map(compiled -> compiled.getAuthorizations(rdf)).orElse(empty()));
+    }
+
+    /**
+     * Check access to a resource without blocking the calling thread.
+     *
+     * <p>If the ACL is not already cached, its authorizations are fetched concurrently and the
+     * result is completed as soon as any one of them grants access; fetches that have not yet
+     * started are then skipped. When the authorization cache is enabled, an ACL that was read in
+     * full is cached at once, and one that was cut short is loaded into the cache in the
+     * background, unless the execution strategy is sequential.</p>
+     *
+     * @param session the session
+     * @param identifier the resource identifier
+     * @param predicate a test for the requested access mode
+     * @return whether access is granted
+     */
+    public CompletionStage<Boolean> anyMatchAsync(final Session session, final IRI identifier,
+            final Predicate<IRI> predicate) {
+        requireNonNull(session, "A non-null session must be provided!");
+        requireNonNull(identifier, "A non-null identifier must be provided!");
+        requireNonNull(predicate, "A non-null predicate must be provided!");
+
+        final ServiceBindings services = bindings.get();
+        final AuthorizationTrace trace = AuthorizationTrace.start(metrics, identifier);
+        return executor.submit(() -> isAdmin(services, session)).thenCompose(admin -> {
+            if (admin) {
+                return completedFuture(true);
+            }
+            if (negatives.isMissing(identifier)) {
+                return completedFuture(false);
+            }
+            final long stamp = resolutions.stamp();
+            final long indexStamp = indexStamp(services);
+            final long missing = negatives.missingStamp();
+            return findAsync(services, session, identifier, null, trace)
+                .thenCompose(resource -> resource.map(res ->
+                            resolveAclAsync(services, session, res, stamp, indexStamp, trace))
+                        .orElseGet(() -> completedFuture(Optional.empty())))
+                .thenApply(acl -> recordMissing(services, identifier, missing, acl))
+                .thenCompose(acl -> acl.map(effective ->
+                            decideAsync(services, session, effective, predicate, trace))
+                        .orElseGet(() -> completedFuture(false)));
+        }).thenApply(granted -> trace.finish(metrics, predicate, granted));
+    }
+
+    private void rebind(final UnaryOperator<ServiceBindings> update) {
+        // Checks in progress keep the snapshot they started with; anything they cache afterwards
+        // carries the old generation and is discarded once the caches have advanced.
+        while (true) {
+            final ServiceBindings current = bindings.get();
+            final ServiceBindings next = update.apply(current);
+            if (next == current) {
+                return;
+            }
+            if (bindings.compareAndSet(current, next)) {
+                if (next.getGeneration() != current.getGeneration()) {
+                    flush(next);
+                }
+                return;
+            }
+        }
+    }
+
+    private void flush(final ServiceBindings services) {
+        final long generation = services.getGeneration();
+        ofNullable(services.getIndex()).ifPresent(AclInheritanceIndex::clear);
+        dictionary.set(new IriDictionary());
+        cache.advance(generation);
+        resolutions.advance(generation);
+        decisions.advance(generation);
+        groupCache.advance(generation);
+        admins.advance(generation);
+        negatives.advance(generation);
+        changes.incrementAndGet();
+    }
+
+    private Boolean isAdmin(final ServiceBindings services, final Session session) {
+        return services.getAgentService().filter(svc -> admins.isAdmin(session.getAgent(), svc::isAdmin,
+                    services.getGeneration())).isPresent();
+    }
+
+    private Set<IRI> getGroups(final ServiceBindings services, final Session session,
+            final AuthorizationTrace trace) {
+        final RequestContext context = getContext(session);
+        if (context != null) {
+            return context.getGroups(session.getAgent(), agent -> loadGroups(services, agent, trace));
+        }
+        return loadGroups(services, session.getAgent(), trace);
+    }
+
+    private Set<IRI> loadGroups(final ServiceBindings services, final IRI agent, final AuthorizationTrace trace) {
+        final long start = trace.isEnabled() ? nanoTime() : 0L;
+        final Set<IRI> groups = services.getAgentService().map(svc -> groupCache.get(agent, id ->
+                    svc.getGroups(id).collect(toList()), services.getGeneration())).orElse(emptySet());
+        if (trace.isEnabled()) {
+            trace.groups(nanoTime() - start);
+        }
+        return groups;
+    }
+
+    private Optional<Resource> find(final ResourceService svc, final Session session, final IRI identifier,
+            final AuthorizationTrace trace) {
+        final RequestContext context = getContext(session);
+        if (context != null) {
+            return context.find(identifier, id -> lookup(svc, session, id, trace));
         }
+        return lookup(svc, session, identifier, trace);
+    }
+
+    private static Optional<Resource> lookup(final ResourceService svc, final Session session, final IRI identifier,
+            final AuthorizationTrace trace) {
+        trace.lookup();
+        return svc.find(session, identifier);
+    }
+
+    private RequestContext getContext(final Session session) {
+        final RequestContext context = currentContext();
+        return context != null && context.getSession().equals(session) ? context : null;
+    }
 
-        final List<IRI> agentGroups = getGroups(session.getAgent());
-        final List<IRI> delegatedGroups = session.getDelegatedBy().map(this::getGroups).orElse(emptyList());
+    private RequestContext currentContext() {
+        // Contexts that were closed out of order, or have expired, are dropped from the thread
+        final RequestContext current = contexts.get();
+        RequestContext context = current;
+        while (context != null && !context.isOpen()) {
+            context = context.getPrevious();
+        }
+        if (context != current) {
+            setContext(context);
+        }
+        return context;
+    }
+
+    private void setContext(final RequestContext context) {
+        if (context == null) {
+            contexts.remove();
+        } else {
+            contexts.set(context);
+        }
+    }
 
-        return ofNullable(service).flatMap(svc -> svc.find(session, identifier))
-                    .map(resource -> getAllAuthorizationsFor(session, resource)
-                        .filter(auth -> {
-                            if (session.getDelegatedBy().isPresent() &&
-                                    !auth.getAgent().contains(session.getDelegatedBy().get())) {
-                                return false;
-                            }
-                            return auth.getAgent().contains(session.getAgent()) ||
-                                    agentGroups.stream().anyMatch(auth.getAgentGroup()::contains);
-                        })).orElse(empty())
-                    .anyMatch(auth -> auth.getMode().stream().anyMatch(predicate));
+    private static DecisionCache.Key decisionKey(final Session session, final EffectiveAcl acl) {
+        return new DecisionCache.Key(session.getAgent(), session.getDelegatedBy().orElse(null), acl);
     }
 
-    private List<IRI> getGroups(final IRI agent) {
-        return ofNullable(agentSvc).map(svc -> svc.getGroups(agent).collect(toList())).orElse(emptyList());
+    private DecisionCache.Decision cachedDecision(final ServiceBindings services, final Session session,
+            final EffectiveAcl effective, final AuthorizationTrace trace) {
+        final DecisionCache.Decision decision = getDecision(services, decisionKey(session, effective), key ->
+                decide(session, effective, () -> getGroups(services, session, trace),
+                    id -> getCompiledAcl(services, session, id, trace)));
+        trace.acl(effective.getAcl(), decision.getAclSize());
+        return decision;
     }
 
-    private Stream<Authorization> getAllAuthorizationsFor(final Session session, final Resource resource) {
+    private DecisionCache.Decision getDecision(final ServiceBindings services, final DecisionCache.Key key,
+            final Function<DecisionCache.Key, DecisionCache.Decision> loader) {
+        final DecisionCache.Decision denied = negatives.getDenied(key);
+        if (denied != null) {
+            return denied;
+        }
+        final long stamp = negatives.deniedStamp();
+        final DecisionCache.Decision decision = decisions.get(key, loader, services.getGeneration());
+        negatives.putDenied(key, decision, services.getGeneration(), stamp);
+        return decision;
+    }
+
+    private Optional<EffectiveAcl> resolveTarget(final ServiceBindings services, final Session session,
+            final IRI identifier, final AuthorizationTrace trace) {
+        if (negatives.isMissing(identifier)) {
+            return Optional.empty();
+        }
+        final long stamp = resolutions.stamp();
+        final long indexStamp = indexStamp(services);
+        final long missing = negatives.missingStamp();
+        return recordMissing(services, identifier, missing, services.getResourceService()
+                .flatMap(svc -> find(svc, session, identifier, trace))
+                .flatMap(resource -> resolveAcl(services, session, resource, stamp, indexStamp, trace)));
+    }
+
+    private Optional<EffectiveAcl> recordMissing(final ServiceBindings services, final IRI identifier,
+            final long stamp, final Optional<EffectiveAcl> acl) {
+        // A resource that is absent, or that no ACL governs, is denied to everyone but administrators
+        if (!acl.isPresent() && services.getResourceService().isPresent()) {
+            negatives.putMissing(identifier, services.getGeneration(), stamp);
+        }
+        return acl;
+    }
+
+    private DecisionCache.Decision decide(final Session session, final EffectiveAcl effective,
+            final Supplier<Set<IRI>> agentGroups, final Function<IRI, Optional<CompiledAcl>> acls) {
+        final Optional<CompiledAcl> acl = acls.apply(effective.getAcl());
+        if (!acl.isPresent()) {
+            return new DecisionCache.Decision(emptySet(), null);
+        }
+        final Set<IRI> groups = agentGroups.get();
+        return new DecisionCache.Decision(acl.get().getModes(session.getAgent(), session.getDelegatedBy(), groups,
+                    effective), acl.get(), groups);
+    }
+
+    private Optional<CompiledAcl> getCompiledAcl(final ServiceBindings services, final Session session,
+            final IRI identifier, final AuthorizationTrace trace) {
+        return services.getResourceService().map(svc -> cache.get(identifier, id ->
+                    compileAcl(svc, session, id, trace), services.getGeneration()));
+    }
+
+    private CompiledAcl compileAcl(final ResourceService svc, final Session session, final IRI identifier,
+            final AuthorizationTrace trace) {
+        return find(svc, session, identifier, trace).map(resource -> compileAcl(svc, session, resource, trace))
+            .orElse(null);
+    }
+
+    private CompiledAcl compileAcl(final ResourceService svc, final Session session, final Resource resource,
+            final AuthorizationTrace trace) {
+        final List<IRI> children = resource.getChildren().collect(toList());
+        return new CompiledAcl(resource.getIdentifier(), loadAuthorizations(svc, session, children, dictionary(),
+                    trace), new HashSet<>(children), resource.getModified());
+    }
+
+    private List<CompactAuthorization> loadAuthorizations(final ResourceService svc, final Session session,
+            final List<IRI> children, final IriDictionary dictionary, final AuthorizationTrace trace) {
+        if (svc instanceof BulkResourceService) {
+            final BulkResourceService bulk = (BulkResourceService) svc;
+            return executor.map(batches(children, bulk.getBatchSize()), batch ->
+                    fetchAuthorizations(bulk, session, batch, dictionary, trace)).stream().flatMap(List::stream)
+                .collect(toList());
+        }
+        return executor.map(children, id -> find(svc, session, id, trace).filter(isAuthorization)
+                .map(auth -> CompactAuthorization.from(auth, dictionary))).stream()
+            .filter(Optional::isPresent).map(Optional::get).collect(toList());
+    }
+
+    private CompletableFuture<List<CompactAuthorization>> loadAuthorizationsAsync(final ServiceBindings services,
+            final Session session, final List<IRI> children, final IriDictionary dictionary,
+            final AuthorizationTrace trace) {
+        final List<CompletableFuture<List<CompactAuthorization>>> futures = services.getResourceService()
+            .filter(BulkResourceService.class::isInstance).map(BulkResourceService.class::cast)
+            .map(bulk -> batches(children, bulk.getBatchSize()).stream().map(batch ->
+                        executor.submit(() -> fetchAuthorizations(bulk, session, batch, dictionary, trace))))
+            .orElseGet(() -> children.stream().map(id ->
+                        findAuthorizationAsync(services, session, id, dictionary, trace)
+                        .thenApply(auth -> auth.map(Collections::singletonList).orElse(emptyList()))))
+            .collect(toList());
+        return allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(x -> futures.stream()
+                .map(CompletableFuture::join).flatMap(List::stream).collect(toList()));
+    }
+
+    private static List<CompactAuthorization> fetchAuthorizations(final BulkResourceService svc,
+            final Session session, final List<IRI> identifiers, final IriDictionary dictionary,
+            final AuthorizationTrace trace) {
+        trace.lookup();
+        return svc.findAuthorizations(session, identifiers).filter(isAuthorization)
+            .map(auth -> CompactAuthorization.from(auth, dictionary)).collect(toList());
+    }
+
+    private static List<List<IRI>> batches(final List<IRI> items, final int size) {
+        if (items.isEmpty()) {
+            return emptyList();
+        } else if (size < 1 || size >= items.size()) {
+            return singletonList(items);
+        }
+        final List<List<IRI>> batches = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += size) {
+            batches.add(items.subList(i, Math.min(i + size, items.size())));
+        }
+        return batches;
+    }
+
+    private Optional<Resource> findAncestorWithAccessControl(final ServiceBindings services, final Session session,
+            final IRI identifier, final long stamp) {
+        final EffectiveAcl cached = resolutions.get(identifier);
+        if (cached != null) {
+            return services.getResourceService().flatMap(svc -> find(svc, session, cached.getAncestor(),
+                            AuthorizationTrace.NONE));
+        }
+        return services.getResourceService().flatMap(svc -> find(svc, session, identifier, AuthorizationTrace.NONE))
+            .flatMap(resource -> findAncestorWithAccessControl(services, session, resource, stamp));
+    }
+
+    private Optional<Resource> findAncestorWithAccessControl(final ServiceBindings services, final Session session,
+            final Resource resource, final long stamp) {
+        if (resource.getAccessControl().isPresent()) {
+            resolutions.put(resource.getIdentifier(), effectiveAcl(resource), services.getGeneration(), stamp);
+            return Optional.of(resource);
+        }
+        final Optional<Resource> ancestor = resource.getParent()
+            .flatMap(id -> findAncestorWithAccessControl(services, session, id, stamp));
+        ancestor.ifPresent(res -> resolutions.put(resource.getIdentifier(), effectiveAcl(res),
+                    services.getGeneration(), stamp));
+        return ancestor;
+    }
+
+    private CompletableFuture<Optional<Resource>> findAsync(final ServiceBindings services, final Session session,
+            final IRI identifier, final CompletableFuture<?> until, final AuthorizationTrace trace) {
+        return services.getResourceService().map(svc -> executor.submit(() -> until != null && until.isDone() ?
+                    Optional.<Resource>empty() : find(svc, session, identifier, trace)))
+            .orElseGet(() -> completedFuture(Optional.empty()));
+    }
+
+    private CompletableFuture<Optional<EffectiveAcl>> resolveAclAsync(final ServiceBindings services,
+            final Session session, final IRI identifier, final long stamp, final long indexStamp,
+            final AuthorizationTrace trace) {
+        final EffectiveAcl cached = resolutions.get(identifier);
+        if (cached != null) {
+            return completedFuture(Optional.of(cached));
+        }
+        final AclInheritanceIndex.Resolution indexed = indexed(services, identifier);
+        if (indexed.isKnown()) {
+            return completedFuture(indexed.getAcl());
+        }
+        return findAsync(services, session, identifier, null, trace).thenCompose(resource -> resource
+                .map(res -> resolveAclAsync(services, session, res, stamp, indexStamp, trace))
+                .orElseGet(() -> completedFuture(Optional.empty())));
+    }
+
+    private CompletableFuture<Optional<EffectiveAcl>> resolveAclAsync(final ServiceBindings services,
+            final Session session, final Resource resource, final long stamp, final long indexStamp,
+            final AuthorizationTrace trace) {
+        trace.step();
+        final AclInheritanceIndex.Resolution indexed = indexed(services, resource.getIdentifier());
+        if (indexed.isKnown()) {
+            return completedFuture(indexed.getAcl());
+        }
         if (resource.getAccessControl().isPresent()) {
-            return getAuthorizations(session, resource.getAccessControl().get()).filter(hasAccess(resource));
+            final EffectiveAcl acl = effectiveAcl(resource);
+            resolutions.put(resource.getIdentifier(), acl, services.getGeneration(), stamp);
+            index(services, resource, indexStamp);
+            return completedFuture(Optional.of(acl));
+        }
+        return resource.getParent().map(id -> resolveAclAsync(services, session, id, stamp, indexStamp, trace))
+            .orElseGet(() -> completedFuture(Optional.empty())).thenApply(acl -> {
+                acl.ifPresent(effective -> resolutions.put(resource.getIdentifier(), effective,
+                            services.getGeneration(), stamp));
+                index(services, resource, indexStamp);
+                return acl;
+            });
+    }
+
+    private CompletableFuture<Optional<CompiledAcl>> getCompiledAclAsync(final ServiceBindings services,
+            final Session session, final IRI identifier, final AuthorizationTrace trace) {
+        final CompiledAcl cached = cache.getIfPresent(identifier);
+        if (cached != null) {
+            return completedFuture(Optional.of(cached));
         }
-        return resource.getParent().flatMap(id -> findAncestorWithAccessControl(session, id)).map(ancestor ->
-            ancestor.getAccessControl().map(id -> getAuthorizations(session, id))
-                .orElse(empty()).filter(hasAccess(ancestor))).orElse(empty());
+        final long stamp = cache.stamp();
+        return findAsync(services, session, identifier, null, trace).thenCompose(resource -> resource.map(res -> {
+            final List<IRI> children = res.getChildren().collect(toList());
+            return loadAuthorizationsAsync(services, session, children, dictionary(), trace).thenApply(authorizations ->
+                    Optional.of(toCompiledAcl(services, identifier, children, authorizations, res.getModified(),
+                            stamp)));
+        }).orElseGet(() -> completedFuture(Optional.empty())));
     }
 
+    private CompletableFuture<Boolean> decideAsync(final ServiceBindings services, final Session session,
+            final EffectiveAcl effective, final Predicate<IRI> predicate, final AuthorizationTrace trace) {
+        final DecisionCache.Key key = decisionKey(session, effective);
+        final DecisionCache.Decision denied = negatives.getDenied(key);
+        final DecisionCache.Decision cached = denied != null ? denied : decisions.getIfPresent(key);
+        if (cached != null) {
+            trace.acl(effective.getAcl(), cached.getAclSize());
+            return completedFuture(cached.getModes().stream().anyMatch(predicate));
+        }
+        final long stamp = decisions.stamp();
+
+        final CompletableFuture<Set<IRI>> agentGroups = executor.submit(() ->
+                getGroups(services, session, trace));
+        final CompiledAcl compiled = cache.getIfPresent(effective.getAcl());
+        if (compiled != null) {
+            trace.acl(effective.getAcl(), compiled.size());
+            return agentGroups.thenApply(groups -> cacheDecision(services, session, effective, compiled, groups, stamp)
+                    .getModes().stream().anyMatch(predicate));
+        }
+
+        if (cache.isEnabled()) {
+            final long aclStamp = cache.stamp();
+            return decideLazily(services, session, effective, predicate, agentGroups, trace, loaded -> {
+                cache.put(effective.getAcl(), loaded, services.getGeneration(), aclStamp);
+                agentGroups.thenAccept(groups -> cacheDecision(services, session, effective, loaded, groups, stamp));
+            }).thenApply(granted -> {
+                if (granted) {
+                    executor.background(() ->
+                            getCompiledAcl(services, session, effective.getAcl(), AuthorizationTrace.NONE));
+                }
+                return granted;
+            });
+        }
+        return decideLazily(services, session, effective, predicate, agentGroups, trace, null);
+    }
+
+    private boolean decideUncached(final ServiceBindings services, final Session session,
+            final EffectiveAcl effective, final Predicate<IRI> predicate, final AuthorizationTrace trace) {
+        // Small ACLs are read in order on the calling thread, stopping at the first grant
+        return services.getResourceService().flatMap(svc -> find(svc, session, effective.getAcl(), trace)
+                .map(res -> {
+                    final List<IRI> children = res.getChildren().collect(toList());
+                    trace.acl(effective.getAcl(), children.size());
+                    if (children.isEmpty()) {
+                        return false;
+                    }
+                    final Set<IRI> groups = getGroups(services, session, trace);
+                    return executor.anyMatch(children, id -> find(svc, session, id, trace).filter(isAuthorization)
+                            .filter(auth -> AuthorizationMatcher.grants(auth, session, groups, effective, predicate))
+                            .isPresent());
+                })).orElse(false);
+    }
+
+    private CompletableFuture<Boolean> decideLazily(final ServiceBindings services, final Session session,
+            final EffectiveAcl effective, final Predicate<IRI> predicate,
+            final CompletableFuture<Set<IRI>> agentGroups, final AuthorizationTrace trace,
+            final Consumer<CompiledAcl> whenRead) {
+        final CompletableFuture<Optional<Resource>> acl = findAsync(services, session, effective.getAcl(), null,
+                trace);
+        return acl.thenCompose(resource -> resource.map(res -> {
+            final CompletableFuture<Boolean> result = new CompletableFuture<>();
+            final List<IRI> children = res.getChildren().collect(toList());
+            trace.acl(effective.getAcl(), children.size());
+            final Resource[] fetched = new Resource[children.size()];
+            final List<CompletableFuture<Boolean>> futures = new ArrayList<>(children.size());
+            for (int i = 0; i < children.size(); ++i) {
+                final int position = i;
+                futures.add(findAsync(services, session, children.get(i), result, trace)
+                        .thenCombine(agentGroups, (child, groups) -> {
+                            fetched[position] = child.orElse(null);
+                            return child.filter(isAuthorization).filter(auth ->
+                                AuthorizationMatcher.grants(auth, session, groups, effective, predicate)).isPresent();
+                        })
+                        .thenApply(granted -> granted && result.complete(true)));
+            }
+            allOf(futures.toArray(new CompletableFuture<?>[0])).whenComplete((x, err) -> {
+                if (err != null) {
+                    result.completeExceptionally(err);
+                    return;
+                }
+                if (whenRead != null && !result.isDone()) {
+                    // Nothing granted access, so every child was read and the full ACL can be compiled
+                    final IriDictionary dict = dictionary();
+                    whenRead.accept(new CompiledAcl(effective.getAcl(), Stream.of(fetched).filter(Objects::nonNull)
+                                .filter(isAuthorization).map(auth -> CompactAuthorization.from(auth, dict))
+                                .collect(toList()), new HashSet<>(children), res.getModified()));
+                }
+                result.complete(false);
+            });
+            return result;
+        }).orElseGet(() -> completedFuture(false)));
+    }
+
+    private CompletableFuture<Optional<CompactAuthorization>> findAuthorizationAsync(final ServiceBindings services,
+            final Session session, final IRI identifier, final IriDictionary dictionary,
+            final AuthorizationTrace trace) {
+        return findAsync(services, session, identifier, null, trace)
+            .thenApply(resource -> resource.filter(isAuthorization)
+                    .map(auth -> CompactAuthorization.from(auth, dictionary)));
+    }
+
+    private CompiledAcl toCompiledAcl(final ServiceBindings services, final IRI identifier, final List<IRI> children,
+            final List<CompactAuthorization> authorizations, final Instant modified, final long stamp) {
+        final CompiledAcl acl = new CompiledAcl(identifier, authorizations, new HashSet<>(children), modified);
+        cache.put(identifier, acl, services.getGeneration(), stamp);
+        return acl;
+    }
+
+    private DecisionCache.Decision cacheDecision(final ServiceBindings services, final Session session,
+            final EffectiveAcl effective, final CompiledAcl acl, final Set<IRI> agentGroups, final long stamp) {
+        final DecisionCache.Decision decision = new DecisionCache.Decision(acl.getModes(session.getAgent(),
+                    session.getDelegatedBy(), agentGroups, effective), acl, agentGroups);
+        decisions.put(decisionKey(session, effective), decision, services.getGeneration(), stamp);
+        return decision;
+    }
+
+    private Optional<EffectiveAcl> resolveAcl(final ServiceBindings services, final Session session,
+            final IRI identifier, final long stamp, final long indexStamp, final AuthorizationTrace trace) {
+        final EffectiveAcl cached = resolutions.get(identifier);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        final AclInheritanceIndex.Resolution indexed = indexed(services, identifier);
+        if (indexed.isKnown()) {
+            return indexed.getAcl();
+        }
+        return services.getResourceService().flatMap(svc -> find(svc, session, identifier, trace))
+            .flatMap(resource -> resolveAcl(services, session, resource, stamp, indexStamp, trace));
+    }
+
+    private Optional<EffectiveAcl> resolveAcl(final ServiceBindings services, final Session session,
+            final Resource resource, final long stamp, final long indexStamp, final AuthorizationTrace trace) {
+        trace.step();
+        final AclInheritanceIndex.Resolution indexed = indexed(services, resource.getIdentifier());
+        if (indexed.isKnown()) {
+            return indexed.getAcl();
+        }
+        final Optional<EffectiveAcl> acl = resource.getAccessControl().isPresent() ?
+            Optional.of(effectiveAcl(resource)) :
+            resource.getParent().flatMap(id -> resolveAcl(services, session, id, stamp, indexStamp, trace));
+        acl.ifPresent(effective -> resolutions.put(resource.getIdentifier(), effective, services.getGeneration(),
+                    stamp));
+        index(services, resource, indexStamp);
+        return acl;
+    }
+
+    private static boolean isCurrent(final CompiledAcl acl, final Resource resource) {
+        return acl.getModified().equals(ofNullable(resource.getModified())) &&
+            acl.getMembers().equals(resource.getChildren().collect(toSet()));
+    }
+
+    private IriDictionary dictionary() {
+        final IriDictionary current = dictionary.get();
+        if (current.isFull()) {
+            // ACLs compiled with the full dictionary keep it until they are dropped
+            dictionary.compareAndSet(current, new IriDictionary());
+            return dictionary.get();
+        }
+        return current;
+    }
+
+    private static AclInheritanceIndex.Resolution indexed(final ServiceBindings services, final IRI identifier) {
+        final AclInheritanceIndex idx = services.getIndex();
+        return idx == null ? AclInheritanceIndex.Resolution.UNKNOWN : idx.resolve(identifier);
+    }
+
+    private static long indexStamp(final ServiceBindings services) {
+        final AclInheritanceIndex idx = services.getIndex();
+        return idx == null ? 0L : idx.stamp();
+    }
+
+    private static void index(final ServiceBindings services, final Resource resource, final long stamp) {
+        final AclInheritanceIndex idx = services.getIndex();
+        if (idx != null) {
+            idx.put(resource, stamp);
+        }
+    }
+
+    /**
+     * A builder for a {@link WebACService}.
+     */
+    public static final class Builder {
+        private AuthorizationCache cache = new AuthorizationCache(0, 0, SECONDS);
+        private AclResolutionCache resolutions = new AclResolutionCache(0, 0, SECONDS);
+        private DecisionCache decisions = new DecisionCache(0, 0, SECONDS);
+        private GroupCache groups = new GroupCache(0, 0, SECONDS);
+        private AdminCache admins = new AdminCache(0, 0, SECONDS);
+        private NegativeCache negatives = new NegativeCache(0, 0, SECONDS);
+        private ExecutionStrategy executor = ExecutionStrategy.sequential();
+        private AuthorizationMetrics metrics = AuthorizationMetrics.noop();
+
+        private Builder() {
+            // use WebACService.builder()
+        }
+
+        /**
+         * Set the cache of compiled ACLs.
+         *
+         * @param cache the cache
+         * @return this builder
+         */
+        public Builder cache(final AuthorizationCache cache) {
+            this.cache = requireNonNull(cache, "A non-null AuthorizationCache must be provided!");
+            return this;
+        }
+
+        /**
+         * Set the cache of effective ACL resolutions.
+         *
+         * @param resolutions the cache
+         * @return this builder
+         */
+        public Builder resolutions(final AclResolutionCache resolutions) {
+            this.resolutions = requireNonNull(resolutions, "A non-null AclResolutionCache must be provided!");
+            return this;
+        }
+
+        /**
+         * Set the cache of per-agent authorization decisions.
+         *
+         * @param decisions the cache
+         * @return this builder
+         */
+        public Builder decisions(final DecisionCache decisions) {
+            this.decisions = requireNonNull(decisions, "A non-null DecisionCache must be provided!");
+            return this;
+        }
+
+        /**
+         * Set the cache of group memberships.
+         *
+         * @param groups the cache
+         * @return this builder
+         */
+        public Builder groups(final GroupCache groups) {
+            this.groups = requireNonNull(groups, "A non-null GroupCache must be provided!");
+            return this;
+        }
+
+        /**
+         * Set the cache of administrator status.
+         *
+         * @param admins the cache
+         * @return this builder
+         */
+        public Builder admins(final AdminCache admins) {
+            this.admins = requireNonNull(admins, "A non-null AdminCache must be provided!");
+            return this;
+        }
+
+        /**
+         * Set the cache of missing resources and denied access.
+         *
+         * @param negatives the cache
+         * @return this builder
+         */
+        public Builder negatives(final NegativeCache negatives) {
+            this.negatives = requireNonNull(negatives, "A non-null NegativeCache must be provided!");
+            return this;
+        }
+
+        /**
+         * Set the strategy for loading the authorizations in an ACL.
+         *
+         * @param executor the strategy
+         * @return this builder
+         */
+        public Builder executor(final ExecutionStrategy executor) {
+            this.executor = requireNonNull(executor, "A non-null ExecutionStrategy must be provided!");
+            return this;
+        }
+
+        /**
+         * Set the sink for authorization traces.
+         *
+         * @param metrics the sink
+         * @return this builder
+         */
+        public Builder metrics(final AuthorizationMetrics metrics) {
+            this.metrics = requireNonNull(metrics, "A non-null AuthorizationMetrics must be provided!");
+            return this;
+        }
+
+        /**
+         * Build the service.
+         *
+         * @return the WebAC service
+         */
+        public WebACService build() {
+            return new WebACService(this);
+        }
+    }
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class AccessModeTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    @Test
+    public void testOf() {
+        assertEquals(AccessMode.READ, AccessMode.of(rdf.createIRI(ACL.uri + "Read")).get());
+        assertEquals(AccessMode.CONTROL, AccessMode.of(ACL.Control).get());
+        assertFalse(AccessMode.of(rdf.createIRI(ACL.uri + "Other")).isPresent());
+        assertEquals(ACL.Append, AccessMode.APPEND.getIRI());
+    }
+
+    @Test
+    public void testIntern() {
+        assertSame(ACL.Write, AccessMode.intern(rdf.createIRI(ACL.uri + "Write")));
+        final IRI other = rdf.createIRI(ACL.uri + "Other");
+        assertSame(other, AccessMode.intern(other));
+    }
+
+    @Test
+    public void testMask() {
+        final int mask = AccessMode.toMask(asList(ACL.Read, rdf.createIRI(ACL.uri + "Append"),
+                    rdf.createIRI(ACL.uri + "Other")));
+        assertEquals(5, mask);
+        assertEquals(EnumSet.of(AccessMode.READ, AccessMode.APPEND), AccessMode.fromMask(mask));
+        assertTrue(AccessMode.fromMask(0).isEmpty());
+        assertEquals(EnumSet.allOf(AccessMode.class), AccessMode.fromMask(15));
+    }
+
+    @Test
+    public void testInternedAuthorization() {
+        final IRI auth = rdf.createIRI("info:trellis/acl/auth");
+        final CompactAuthorization compact = CompactAuthorization.builder(auth, new IriDictionary())
+            .add(rdf.createTriple(auth, ACL.mode, rdf.createIRI(ACL.uri + "Read"))).build();
+        assertSame(ACL.Read, compact.getModes()[0]);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Optional.of;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.Session;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class AclInheritanceIndexTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final IRI root = rdf.createIRI("info:trellis");
+
+    private final IRI rootAcl = rdf.createIRI("info:trellis/acl");
+
+    private final IRI container = rdf.createIRI("info:trellis/a");
+
+    private final IRI child = rdf.createIRI("info:trellis/a/b");
+
+    private final IRI childAcl = rdf.createIRI("info:trellis/a/b/acl");
+
+    private final IRI resource = rdf.createIRI("info:trellis/a/b/c");
+
+    private final IRI type = rdf.createIRI("info:type/Container");
+
+    private final InMemoryRepository repository = new InMemoryRepository();
+
+    private final Session session = repository.session(rdf.createIRI("info:user/agent"), null);
+
+    private final AclInheritanceIndex index = new AclInheritanceIndex();
+
+    @Before
+    public void setUp() {
+        repository.put(root, null, rootAcl);
+        repository.put(rootAcl, root, null);
+        repository.put(container, root, null);
+        repository.put(child, container, childAcl, type);
+        repository.put(childAcl, child, null);
+        repository.put(resource, child, null);
+    }
+
+    @Test
+    public void testBuild() {
+        assertEquals(6L, index.build(repository.getResourceService(), session, root));
+        assertEquals(6L, index.size());
+
+        final EffectiveAcl acl = index.resolve(resource).getAcl().get();
+        assertEquals(childAcl, acl.getAcl());
+        assertEquals(child, acl.getAncestor());
+        assertEquals(type, acl.getAncestorTypes().get(0));
+        assertEquals(rootAcl, index.resolve(container).getAcl().get().getAcl());
+        assertEquals(root, index.resolve(root).getAcl().get().getAncestor());
+        assertFalse(index.resolve(rdf.createIRI("info:trellis/missing")).isKnown());
+    }
+
+    @Test
+    public void testNoAcl() {
+        repository.setAccessControl(root, null);
+        index.build(repository.getResourceService(), session, root);
+        assertFalse(index.resolve(container).getAcl().isPresent());
+        assertEquals(childAcl, index.resolve(resource).getAcl().get().getAcl());
+    }
+
+    @Test
+    public void testInvalidate() {
+        index.build(repository.getResourceService(), session, root);
+        index.invalidate(container);
+        assertFalse(index.resolve(container).isKnown());
+        assertEquals(childAcl, index.resolve(resource).getAcl().get().getAcl());
+
+        index.invalidate(child);
+        assertFalse(index.resolve(resource).isKnown());
+    }
+
+    @Test
+    public void testRemove() {
+        index.build(repository.getResourceService(), session, root);
+        index.remove(child);
+        assertEquals(3L, index.size());
+        assertFalse(index.resolve(resource).isKnown());
+        assertEquals(rootAcl, index.resolve(container).getAcl().get().getAcl());
+
+        index.clear();
+        assertEquals(0L, index.size());
+        assertFalse(index.resolve(root).isKnown());
+    }
+
+    @Test
+    public void testSharedValues() {
+        index.build(repository.getResourceService(), session, root);
+        assertEquals(7, index.getSharedCount());
+        index.remove(child);
+        assertEquals(4, index.getSharedCount());
+        index.invalidate(root);
+        assertEquals(2, index.getSharedCount());
+        index.clear();
+        assertEquals(0, index.getSharedCount());
+    }
+
+    @Test
+    public void testManyChildren() {
+        for (int i = 0; i < 20; ++i) {
+            repository.put(rdf.createIRI(container.getIRIString() + "/" + i), container, null);
+        }
+        assertEquals(26L, index.build(repository.getResourceService(), session, root));
+        for (int i = 0; i < 20; i += 2) {
+            index.remove(rdf.createIRI(container.getIRIString() + "/" + i));
+        }
+        assertEquals(16L, index.size());
+        assertFalse(index.resolve(rdf.createIRI(container.getIRIString() + "/4")).isKnown());
+        assertEquals(rootAcl, index.resolve(rdf.createIRI(container.getIRIString() + "/5")).getAcl().get()
+                .getAcl());
+        assertEquals(childAcl, index.resolve(resource).getAcl().get().getAcl());
+    }
+
+    @Test
+    public void testStalePut() {
+        final IRI containerAcl = rdf.createIRI("info:trellis/a/acl");
+        index.build(repository.getResourceService(), session, root);
+
+        final long stamp = index.stamp();
+        final Resource stale = repository.getResourceService().find(session, container).get();
+        repository.setAccessControl(container, containerAcl);
+        index.invalidate(container);
+        index.put(stale, stamp);
+        assertFalse(index.resolve(container).isKnown());
+
+        index.put(repository.getResourceService().find(session, container).get(), index.stamp());
+        assertTrue(index.resolve(container).isKnown());
+        assertEquals(containerAcl, index.resolve(container).getAcl().get().getAcl());
+    }
+
+    @Test
+    public void testNonHierarchicalParent() {
+        final IRI other = rdf.createIRI("info:other/resource");
+        repository.put(other, container, null);
+        index.build(repository.getResourceService(), session, root);
+        assertEquals(rootAcl, index.resolve(container).getAcl().get().getAcl());
+        assertFalse(index.resolve(other).isKnown());
+    }
+
+    @Test
+    public void testService() {
+        final WebACService service = WebACService.builder()
+            .build();
+        service.bind(repository.getResourceService());
+        service.bind(repository.getAgentService());
+        service.bind(index);
+        index.build(repository.getResourceService(), session, root);
+
+        final long finds = repository.getFindCount();
+        assertEquals(of(childAcl), service.findAclFor(session, resource));
+        assertEquals(of(rootAcl), service.findAclFor(session, container));
+        assertEquals(finds, repository.getFindCount());
+
+        repository.setAccessControl(child, null);
+        service.invalidate(child);
+        assertEquals(of(rootAcl), service.findAclFor(session, resource));
+        assertEquals(finds + 2, repository.getFindCount());
+        assertEquals(Optional.of(rootAcl), index.resolve(resource).getAcl().map(EffectiveAcl::getAcl));
+
+        service.unbind(index);
+        assertEquals(of(rootAcl), service.findAclFor(session, resource));
+        assertEquals(finds + 6, repository.getFindCount());
+    }
+}
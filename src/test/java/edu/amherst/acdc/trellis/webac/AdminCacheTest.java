@@ -0,0 +1,101 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class AdminCacheTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final IRI admin = rdf.createIRI("info:user/admin");
+
+    private final IRI agent = rdf.createIRI("info:user/agent");
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final Predicate<IRI> loader = id -> {
+        calls.incrementAndGet();
+        return admin.equals(id);
+    };
+
+    @Test
+    public void testCachedAnswers() {
+        final AdminCache cache = new AdminCache(10, 5, MINUTES);
+        assertTrue(cache.isAdmin(admin, loader, 0L));
+        assertFalse(cache.isAdmin(agent, loader, 0L));
+        assertTrue(cache.isAdmin(admin, loader, 0L));
+        assertFalse(cache.isAdmin(agent, loader, 0L));
+        assertEquals(2, calls.get());
+        assertEquals(2L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+        assertEquals(2L, cache.size());
+
+        cache.invalidate(agent);
+        assertFalse(cache.isAdmin(agent, loader, 0L));
+        assertEquals(3, calls.get());
+
+        cache.invalidateAll();
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void testNoNegativeCaching() {
+        final AdminCache cache = new AdminCache(10, 5, 0, MINUTES);
+        assertFalse(cache.isAdmin(agent, loader, 0L));
+        assertFalse(cache.isAdmin(agent, loader, 0L));
+        assertTrue(cache.isAdmin(admin, loader, 0L));
+        assertTrue(cache.isAdmin(admin, loader, 0L));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void testConcurrentMisses() {
+        final IRI other = rdf.createIRI("info:user/other");
+        final AdminCache cache = new AdminCache(10, 5, MINUTES);
+        // A miss on one agent must not stop the answer for another from being cached
+        assertTrue(cache.isAdmin(admin, id -> {
+            assertFalse(cache.isAdmin(other, loader, 0L));
+            return loader.test(id);
+        }, 0L));
+        assertTrue(cache.isAdmin(admin, loader, 0L));
+        assertFalse(cache.isAdmin(other, loader, 0L));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testNullAgent() {
+        final AdminCache cache = new AdminCache(10, 5, MINUTES);
+        assertFalse(cache.isAdmin(null, loader, 0L));
+        assertFalse(cache.isAdmin(null, loader, 0L));
+        assertEquals(2, calls.get());
+        assertEquals(0L, cache.size());
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import edu.amherst.acdc.trellis.spi.Session;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author agent
+ */
+public class AuthorizationSnapshotTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final IRI root = rdf.createIRI("info:trellis");
+
+    private final IRI acl = rdf.createIRI("info:trellis/acl");
+
+    private final IRI auth1 = rdf.createIRI("info:trellis/acl/auth1");
+
+    private final IRI auth2 = rdf.createIRI("info:trellis/acl/auth2");
+
+    private final IRI agent = rdf.createIRI("info:user/agent");
+
+    private final IRI group = rdf.createIRI("info:group/staff");
+
+    private final IRI origin = rdf.createIRI("info:origin/example");
+
+    private final InMemoryRepository repository = new InMemoryRepository();
+
+    private final Session session = repository.session(agent, null);
+
+    @Before
+    public void setUp() {
+        repository.put(root, null, acl);
+        repository.put(acl, root, null);
+        repository.putAuthorization(acl, auth1, rdf.createTriple(auth1, ACL.agent, agent),
+                rdf.createTriple(auth1, ACL.accessTo, root), rdf.createTriple(auth1, ACL.mode, ACL.Read));
+        repository.putAuthorization(acl, auth2, rdf.createTriple(auth2, ACL.agentGroup, group),
+                rdf.createTriple(auth2, ACL.accessToClass, ACL.Authorization),
+                rdf.createTriple(auth2, ACL.mode, ACL.Write),
+                rdf.createTriple(auth2, rdf.createIRI(ACL.uri + "origin"), origin));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final WebACService service = newService();
+        assertEquals(1, service.warmUp(session, asList(acl, rdf.createIRI("info:trellis/missing"))));
+
+        final Path file = folder.getRoot().toPath().resolve("acls.bin");
+        assertEquals(1, service.saveSnapshot(file, 10));
+
+        final List<CompiledAcl> acls = AuthorizationSnapshot.read(file, rdf, new IriDictionary());
+        assertEquals(1, acls.size());
+        final CompiledAcl compiled = acls.get(0);
+        assertEquals(acl, compiled.getIdentifier());
+        assertEquals(2, compiled.size());
+        assertTrue(compiled.contains(auth1));
+        assertTrue(compiled.getModified().isPresent());
+        assertEquals(1, compiled.getEntries().stream().filter(auth -> auth.getIdentifier().equals(auth2))
+                .findFirst().get().getOther().size());
+        assertTrue(compiled.getModes(agent, Optional.empty(), asList(group),
+                    new EffectiveAcl(root, asList(ACL.Authorization), acl)).contains(ACL.Write));
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("acls.bin");
+        final WebACService first = newService();
+        assertTrue(first.canRead(session, root));
+        first.saveSnapshot(file, 10);
+
+        final WebACService second = newService();
+        final long finds = repository.getFindCount();
+        assertEquals(1, second.warmUp(session, file));
+        assertEquals(finds + 1, repository.getFindCount());
+        assertTrue(second.canRead(session, root));
+        assertFalse(second.canWrite(session, root));
+        assertEquals(finds + 3, repository.getFindCount());
+    }
+
+    @Test
+    public void testEditedAuthorization() throws Exception {
+        repository.putAuthorization(acl, auth1, rdf.createTriple(auth1, ACL.agent, agent),
+                rdf.createTriple(auth1, ACL.accessTo, root), rdf.createTriple(auth1, ACL.mode, ACL.Write));
+        final Path file = folder.getRoot().toPath().resolve("acls.bin");
+        final WebACService first = newService();
+        assertTrue(first.canWrite(session, root));
+        first.saveSnapshot(file, 10);
+
+        repository.putAuthorization(acl, auth1, rdf.createTriple(auth1, ACL.agent, agent),
+                rdf.createTriple(auth1, ACL.accessTo, root), rdf.createTriple(auth1, ACL.mode, ACL.Read));
+        final WebACService second = newService();
+        assertEquals(1, second.warmUp(session, file));
+        assertFalse(second.canWrite(session, root));
+        assertTrue(second.canRead(session, root));
+    }
+
+    @Test
+    public void testStaleSnapshot() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("acls.bin");
+        final WebACService first = newService();
+        first.warmUp(session, asList(acl));
+        first.saveSnapshot(file, 10);
+
+        repository.delete(auth1);
+        final WebACService second = newService();
+        final long finds = repository.getFindCount();
+        assertEquals(1, second.warmUp(session, file));
+        assertEquals(finds + 2, repository.getFindCount());
+        assertFalse(second.canRead(session, root));
+    }
+
+    @Test
+    public void testInvalidSnapshot() throws Exception {
+        final WebACService service = newService();
+        final File file = folder.newFile("acls.bin");
+        assertEquals(0, service.warmUp(session, file.toPath()));
+        Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+        assertEquals(0, service.warmUp(session, file.toPath()));
+        assertEquals(0, service.warmUp(session, folder.getRoot().toPath().resolve("missing.bin")));
+    }
+
+    @Test
+    public void testCorruptCounts() throws Exception {
+        final WebACService service = newService();
+        final File file = folder.newFile("acls.bin");
+        for (final int count : new int[] { -1, Integer.MAX_VALUE }) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (final DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(0x57414353);
+                out.writeInt(3);
+                out.writeInt(count);
+            }
+            Files.write(file.toPath(), bytes.toByteArray());
+            assertEquals(0, service.warmUp(session, file.toPath()));
+        }
+    }
+
+    private WebACService newService() {
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(new DecisionCache(10, 5, MINUTES))
+            .build();
+        service.bind(repository.getResourceService());
+        service.bind(repository.getAgentService());
+        return service;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static edu.amherst.acdc.trellis.webac.ExecutionStrategy.boundedPool;
+import static edu.amherst.acdc.trellis.webac.ExecutionStrategy.sequential;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import edu.amherst.acdc.trellis.spi.Authorization;
+import edu.amherst.acdc.trellis.spi.Session;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class BulkResourceServiceTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private static final int SIZE = 10;
+
+    private final IRI root = rdf.createIRI("info:trellis");
+
+    private final IRI acl = rdf.createIRI("info:trellis/acl");
+
+    private final IRI agent = rdf.createIRI("info:user/agent");
+
+    private final InMemoryRepository repository = new InMemoryRepository();
+
+    private final Session session = repository.session(agent, null);
+
+    @Before
+    public void setUp() {
+        repository.put(root, null, acl);
+        repository.put(acl, root, null);
+        for (int i = 0; i < SIZE; ++i) {
+            final IRI auth = rdf.createIRI(acl.getIRIString() + "/auth" + i);
+            repository.putAuthorization(acl, auth, rdf.createTriple(auth, ACL.agent, agent),
+                    rdf.createTriple(auth, ACL.accessTo, root),
+                    rdf.createTriple(auth, ACL.mode, i == SIZE - 1 ? ACL.Write : ACL.Read));
+        }
+        repository.put(rdf.createIRI(acl.getIRIString() + "/other"), acl, null);
+    }
+
+    @Test
+    public void testSingleBatch() {
+        final WebACService service = newService(sequential());
+        service.bind(repository.getBulkResourceService());
+
+        final long finds = repository.getFindCount();
+        assertEquals(SIZE, service.getAuthorizations(session, acl).count());
+        assertEquals(finds + 1, repository.getFindCount());
+        assertEquals(1L, repository.getBulkFindCount());
+    }
+
+    @Test
+    public void testChunks() {
+        repository.setBatchSize(4);
+        final WebACService service = newService(sequential());
+        service.bind(repository.getBulkResourceService());
+
+        assertTrue(service.canRead(session, root));
+        assertTrue(service.canWrite(session, root));
+        assertFalse(service.canControl(session, root));
+        assertEquals(3L, repository.getBulkFindCount());
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        repository.setBatchSize(3);
+        final ExecutionStrategy executor = boundedPool(4, 64, 1);
+        try {
+            final WebACService service = newService(executor);
+            service.bind(repository.getBulkResourceService());
+            assertEquals(SIZE, service.getAuthorizationsAsync(session, acl).toCompletableFuture().get().count());
+            assertEquals(4L, repository.getBulkFindCount());
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testSameAsPerItem() {
+        final WebACService bulk = newService(sequential());
+        bulk.bind(repository.getBulkResourceService());
+        final WebACService single = newService(sequential());
+        single.bind(repository.getResourceService());
+
+        final List<String> expected = names(single.getAuthorizations(session, acl).collect(Collectors.toList()));
+        assertEquals(SIZE + 2L, repository.getFindCount());
+        assertEquals(expected, names(bulk.getAuthorizations(session, acl).collect(Collectors.toList())));
+        assertEquals(SIZE + 3L, repository.getFindCount());
+    }
+
+    private static List<String> names(final List<Authorization> authorizations) {
+        return authorizations.stream().map(auth -> auth.getIdentifier().getIRIString()).sorted()
+            .collect(Collectors.toList());
+    }
+
+    private static WebACService newService(final ExecutionStrategy executor) {
+        return WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(new DecisionCache(10, 5, MINUTES))
+            .executor(executor)
+            .build();
+    }
+}
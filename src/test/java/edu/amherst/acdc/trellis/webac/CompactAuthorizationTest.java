@@ -0,0 +1,109 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static edu.amherst.acdc.trellis.api.Resource.TripleContext.USER_MANAGED;
+import static edu.amherst.acdc.trellis.vocabulary.RDF.type;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.stream.Stream;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.Authorization;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import edu.amherst.acdc.trellis.vocabulary.PROV;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * @author agent
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CompactAuthorizationTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final IRI authIRI = rdf.createIRI("info:trellis/acl/auth");
+
+    private final IRI otherIRI = rdf.createIRI("info:trellis/acl/other");
+
+    private final IRI resourceIRI = rdf.createIRI("info:trellis/resource");
+
+    private final IRI groupIRI = rdf.createIRI("info:group/staff");
+
+    private final IRI bseegerIRI = rdf.createIRI("info:user/bseeger");
+
+    private final IRI acoburnIRI = rdf.createIRI("info:user/acoburn");
+
+    @Mock
+    private Resource mockResource;
+
+    @Test
+    public void testFromResource() {
+        when(mockResource.getIdentifier()).thenReturn(authIRI);
+        when(mockResource.stream(eq(USER_MANAGED))).thenAnswer(inv -> Stream.of(
+                rdf.createTriple(authIRI, type, ACL.Authorization),
+                rdf.createTriple(authIRI, ACL.agent, bseegerIRI),
+                rdf.createTriple(authIRI, ACL.agent, acoburnIRI),
+                rdf.createTriple(authIRI, ACL.agentGroup, groupIRI),
+                rdf.createTriple(authIRI, ACL.accessTo, resourceIRI),
+                rdf.createTriple(authIRI, ACL.accessToClass, PROV.Activity),
+                rdf.createTriple(authIRI, ACL.mode, ACL.Read),
+                rdf.createTriple(authIRI, ACL.mode, ACL.Write),
+                rdf.createTriple(authIRI, ACL.mode, ACL.Control),
+                rdf.createTriple(authIRI, ACL.mode, rdf.createLiteral("ignored")),
+                rdf.createTriple(otherIRI, ACL.mode, ACL.Append)));
+
+        final CompactAuthorization auth = CompactAuthorization.from(mockResource, new IriDictionary());
+        assertEquals(authIRI, auth.getIdentifier());
+        assertArrayEquals(new IRI[]{bseegerIRI, acoburnIRI}, auth.getAgents());
+        assertArrayEquals(new IRI[]{groupIRI}, auth.getAgentGroups());
+        assertArrayEquals(new IRI[]{resourceIRI}, auth.getAccessTo());
+        assertArrayEquals(new IRI[]{PROV.Activity}, auth.getAccessToClass());
+        assertArrayEquals(new IRI[]{ACL.Read, ACL.Write, ACL.Control}, auth.getModes());
+    }
+
+    @Test
+    public void testToAuthorization() {
+        final Authorization auth = CompactAuthorization.builder(authIRI, new IriDictionary())
+            .add(rdf.createTriple(authIRI, ACL.agent, bseegerIRI))
+            .add(rdf.createTriple(authIRI, ACL.accessTo, resourceIRI))
+            .add(rdf.createTriple(authIRI, ACL.mode, ACL.Append))
+            .build().toAuthorization(rdf);
+        assertEquals(authIRI, auth.getIdentifier());
+        assertTrue(auth.getAgent().contains(bseegerIRI));
+        assertTrue(auth.getAccessTo().contains(resourceIRI));
+        assertTrue(auth.getMode().contains(ACL.Append));
+        assertTrue(auth.getAgentGroup().isEmpty());
+    }
+
+    @Test
+    public void testEmpty() {
+        final CompactAuthorization auth = CompactAuthorization.builder(authIRI, new IriDictionary()).build();
+        assertEquals(0, auth.getAgents().length);
+        assertEquals(0, auth.getModes().length);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+import static edu.amherst.acdc.trellis.vocabulary.RDF.type;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+
+import edu.amherst.acdc.trellis.spi.Authorization;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import edu.amherst.acdc.trellis.vocabulary.PROV;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class CompiledAclTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final IRI aclIRI = rdf.createIRI("info:trellis/acl");
+
+    private final IRI resourceIRI = rdf.createIRI("info:trellis/resource");
+
+    private final IRI otherIRI = rdf.createIRI("info:trellis/other");
+
+    private final IRI groupIRI = rdf.createIRI("info:group/staff");
+
+    private final IRI bseegerIRI = rdf.createIRI("info:user/bseeger");
+
+    private final IRI acoburnIRI = rdf.createIRI("info:user/acoburn");
+
+    private final IRI agentIRI = rdf.createIRI("info:user/agent");
+
+    private final IriDictionary dictionary = new IriDictionary();
+
+    private CompactAuthorization authorization(final String id, final IRI predicate1, final IRI object1,
+            final IRI predicate2, final IRI object2, final IRI... modes) {
+        final IRI identifier = rdf.createIRI("info:trellis/acl/" + id);
+        final CompactAuthorization.Builder builder = CompactAuthorization.builder(identifier, dictionary)
+            .add(rdf.createTriple(identifier, type, ACL.Authorization))
+            .add(rdf.createTriple(identifier, predicate1, object1))
+            .add(rdf.createTriple(identifier, predicate2, object2));
+        for (final IRI mode : modes) {
+            builder.add(rdf.createTriple(identifier, ACL.mode, mode));
+        }
+        return builder.build();
+    }
+
+    private CompiledAcl compile() {
+        return new CompiledAcl(aclIRI, asList(
+                authorization("auth1", ACL.agent, bseegerIRI, ACL.accessTo, resourceIRI, ACL.Read),
+                authorization("auth2", ACL.agentGroup, groupIRI, ACL.accessTo, resourceIRI, ACL.Write),
+                authorization("auth3", ACL.agent, acoburnIRI, ACL.accessToClass, PROV.Activity, ACL.Append),
+                authorization("auth4", ACL.agent, bseegerIRI, ACL.accessTo, otherIRI, ACL.Control)),
+                new HashSet<>(asList(rdf.createIRI("info:trellis/acl/auth1"))));
+    }
+
+    @Test
+    public void testAgentModes() {
+        final CompiledAcl acl = compile();
+        final EffectiveAcl target = new EffectiveAcl(resourceIRI, emptyList(), aclIRI);
+        assertEquals(4, acl.size());
+        final Authorization auth = acl.getAuthorizations(rdf).findFirst().get();
+        assertEquals(rdf.createIRI("info:trellis/acl/auth1"), auth.getIdentifier());
+        assertEquals(asList(bseegerIRI), auth.getAgent());
+        assertEquals(asList(resourceIRI), auth.getAccessTo());
+        assertEquals(asList(ACL.Read), auth.getMode());
+        assertSame(auth, acl.getAuthorizations(rdf).findFirst().get());
+        assertEquals(new HashSet<>(asList(ACL.Read)), acl.getModes(bseegerIRI, empty(), emptyList(), target));
+        assertEquals(emptySet(), acl.getModes(acoburnIRI, empty(), emptyList(), target));
+        assertEquals(new HashSet<>(asList(ACL.Control)), acl.getModes(bseegerIRI, empty(), emptyList(),
+                    new EffectiveAcl(otherIRI, emptyList(), aclIRI)));
+    }
+
+    @Test
+    public void testGroupModes() {
+        final CompiledAcl acl = compile();
+        final EffectiveAcl target = new EffectiveAcl(resourceIRI, emptyList(), aclIRI);
+        assertEquals(new HashSet<>(asList(ACL.Write)), acl.getModes(agentIRI, empty(), asList(groupIRI), target));
+        assertEquals(new HashSet<>(asList(ACL.Read, ACL.Write)),
+                acl.getModes(bseegerIRI, empty(), asList(groupIRI), target));
+    }
+
+    @Test
+    public void testAccessToClass() {
+        final CompiledAcl acl = compile();
+        assertEquals(new HashSet<>(asList(ACL.Append)), acl.getModes(acoburnIRI, empty(), emptyList(),
+                    new EffectiveAcl(otherIRI, asList(PROV.Activity), aclIRI)));
+    }
+
+    @Test
+    public void testDelegation() {
+        final CompiledAcl acl = compile();
+        final EffectiveAcl target = new EffectiveAcl(resourceIRI, emptyList(), aclIRI);
+        assertEquals(new HashSet<>(asList(ACL.Read)), acl.getModes(bseegerIRI, of(bseegerIRI), emptyList(), target));
+        assertEquals(emptySet(), acl.getModes(bseegerIRI, of(acoburnIRI), emptyList(), target));
+        assertEquals(emptySet(), acl.getModes(agentIRI, of(bseegerIRI), asList(groupIRI), target));
+    }
+
+    @Test
+    public void testDictionaryIds() {
+        final CompiledAcl acl = compile();
+        final EffectiveAcl target = new EffectiveAcl(resourceIRI, emptyList(), aclIRI);
+        final IRI unknownIRI = rdf.createIRI("info:user/unknown");
+        assertEquals(emptySet(), acl.getModes(unknownIRI, empty(), emptyList(), target));
+        assertEquals(emptySet(), acl.getModes(bseegerIRI, of(unknownIRI), emptyList(), target));
+        assertEquals(IriDictionary.ABSENT, dictionary.lookup(unknownIRI));
+        assertSame(dictionary, acl.getDictionary());
+
+        assertEquals(acl.getModes(bseegerIRI, empty(), asList(groupIRI), target),
+                acl.getModes(dictionary.lookup(bseegerIRI), CompiledAcl.NO_DELEGATION,
+                    new int[]{dictionary.lookup(groupIRI)}, dictionary.lookup(resourceIRI), new int[0]));
+        assertEquals(new HashSet<>(asList(ACL.Write)),
+                acl.getModes(agentIRI, empty(), new GroupSet(asList(groupIRI)), target));
+    }
+
+    @Test
+    public void testEmpty() {
+        final CompiledAcl acl = new CompiledAcl(aclIRI, emptyList(), emptySet());
+        assertEquals(emptySet(), acl.getModes(bseegerIRI, empty(), asList(groupIRI),
+                    new EffectiveAcl(resourceIRI, emptyList(), aclIRI)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMixedDictionaries() {
+        final IRI identifier = rdf.createIRI("info:trellis/acl/other");
+        new CompiledAcl(aclIRI, asList(authorization("auth1", ACL.agent, bseegerIRI, ACL.accessTo, resourceIRI,
+                        ACL.Read), CompactAuthorization.builder(identifier, new IriDictionary()).build()), emptySet());
+    }
+
+    @Test
+    public void testMembers() {
+        final CompiledAcl acl = compile();
+        assertEquals(aclIRI, acl.getIdentifier());
+        assertTrue(acl.contains(rdf.createIRI("info:trellis/acl/auth1")));
+        assertFalse(acl.contains(rdf.createIRI("info:trellis/acl/auth2")));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static edu.amherst.acdc.trellis.webac.ExecutionStrategy.boundedPool;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class ConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    private final ExecutionStrategy executor = boundedPool(4, 1024, 8);
+
+    @After
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(1000L, 5, MINUTES))
+            .resolutions(new AclResolutionCache(1000L, 5, MINUTES))
+            .decisions(new DecisionCache(1000L, 5, MINUTES))
+            .groups(new GroupCache(1000L, 5, MINUTES))
+            .admins(new AdminCache(1000L, 5, MINUTES))
+            .negatives(new NegativeCache(1000L, 5, MINUTES))
+            .executor(executor)
+            .build();
+        check(new StressHarness(service, 8, 8, 16, 1L), 40000);
+    }
+
+    @Test
+    public void testSmallCaches() throws Exception {
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(2L, 5, MINUTES))
+            .resolutions(new AclResolutionCache(4L, 5, MINUTES))
+            .decisions(new DecisionCache(8L, 5, MINUTES))
+            .groups(new GroupCache(2L, 5, MINUTES, true))
+            .admins(new AdminCache(2L, 5, MINUTES))
+            .negatives(new NegativeCache(2L, 5, MINUTES))
+            .executor(executor)
+            .build();
+        check(new StressHarness(service, 8, 8, 16, 2L), 20000);
+    }
+
+    @Test
+    public void testUncached() throws Exception {
+        final WebACService service = WebACService.builder()
+            .executor(executor)
+            .build();
+        check(new StressHarness(service, 4, 4, 8, 3L), 5000);
+    }
+
+    private static void check(final StressHarness harness, final int operations) throws Exception {
+        final StressHarness.Result result = harness.run(THREADS, operations);
+        if (!result.getErrors().isEmpty()) {
+            throw new AssertionError("Concurrent check failed", result.getErrors().get(0));
+        }
+        assertEquals(0L, result.getMismatches());
+        assertEquals(0, harness.verify());
+    }
+}
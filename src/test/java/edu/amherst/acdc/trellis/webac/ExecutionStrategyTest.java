@@ -0,0 +1,142 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class ExecutionStrategyTest {
+
+    private final List<Integer> items = range(0, 100).boxed().collect(toList());
+
+    @Test
+    public void testSequential() {
+        final Thread caller = Thread.currentThread();
+        try (final ExecutionStrategy strategy = ExecutionStrategy.sequential()) {
+            assertEquals(items, strategy.map(items, item -> {
+                assertEquals(caller, Thread.currentThread());
+                return item;
+            }));
+            assertEquals(100L, strategy.getTaskCount());
+            assertEquals(0, strategy.getQueueDepth());
+            assertEquals(0L, strategy.getQueueTime(NANOSECONDS));
+        }
+    }
+
+    @Test
+    public void testBoundedPool() {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        try (final ExecutionStrategy strategy = ExecutionStrategy.boundedPool(4, 10, 8)) {
+            assertEquals(items.stream().map(i -> i * 2).collect(toList()), strategy.map(items, item -> {
+                threads.add(Thread.currentThread());
+                return item * 2;
+            }));
+            assertEquals(100L, strategy.getTaskCount());
+            assertTrue(strategy.getExecutionTime(NANOSECONDS) > 0L);
+            assertFalse(threads.isEmpty());
+            assertTrue(threads.size() <= 5);
+        }
+    }
+
+    @Test
+    public void testThreshold() {
+        final Thread caller = Thread.currentThread();
+        try (final ExecutionStrategy strategy = ExecutionStrategy.boundedPool(4, 10, 8)) {
+            strategy.map(items.subList(0, 7), item -> {
+                assertEquals(caller, Thread.currentThread());
+                return item;
+            });
+        }
+    }
+
+    @Test
+    public void testAnyMatch() {
+        final Thread caller = Thread.currentThread();
+        final Set<Integer> tested = ConcurrentHashMap.newKeySet();
+        try (final ExecutionStrategy strategy = ExecutionStrategy.boundedPool(4, 10, 8)) {
+            assertTrue(strategy.anyMatch(items.subList(0, 7), item -> {
+                assertEquals(caller, Thread.currentThread());
+                tested.add(item);
+                return item == 2;
+            }));
+            assertEquals(3, tested.size());
+            assertFalse(strategy.anyMatch(items.subList(0, 7), item -> item > 10));
+        }
+    }
+
+    @Test
+    public void testAnyMatchPool() {
+        try (final ExecutionStrategy strategy = ExecutionStrategy.boundedPool(4, 10, 8)) {
+            assertTrue(strategy.anyMatch(items, item -> item == 50));
+            assertFalse(strategy.anyMatch(items, item -> item > 100));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAnyMatchException() {
+        try (final ExecutionStrategy strategy = ExecutionStrategy.boundedPool(2, 10, 2)) {
+            strategy.anyMatch(items, item -> {
+                throw new IllegalStateException("Expected");
+            });
+        }
+    }
+
+    @Test(timeout = 10000L)
+    public void testNested() {
+        try (final ExecutionStrategy strategy = ExecutionStrategy.boundedPool(1, 10, 1)) {
+            assertEquals(asList(6, 6), strategy.map(asList(1, 2), item ->
+                        strategy.map(asList(1, 2, 3), x -> x).stream().mapToInt(x -> x).sum()));
+        }
+    }
+
+    @Test
+    public void testVirtualThreads() {
+        try (final ExecutionStrategy strategy = ExecutionStrategy.virtualThreads(2)) {
+            assertEquals(items, strategy.map(items, item -> item));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testException() {
+        try (final ExecutionStrategy strategy = ExecutionStrategy.boundedPool(2, 10, 2)) {
+            strategy.map(items, item -> {
+                if (item == 50) {
+                    throw new IllegalStateException("Expected");
+                }
+                return item;
+            });
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreshold() {
+        ExecutionStrategy.boundedPool(2, 10, 0);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class ExpiringCacheTest {
+
+    @Test
+    public void testLoad() {
+        final AtomicInteger loads = new AtomicInteger();
+        final ExpiringCache<String, Integer> cache = new ExpiringCache<>(10, 5, MINUTES);
+        assertEquals((Integer) 1, cache.get("a", key -> loads.incrementAndGet()));
+        assertEquals((Integer) 1, cache.get("a", key -> loads.incrementAndGet()));
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertNull(cache.get("b", key -> null));
+        assertEquals(1L, cache.size());
+    }
+
+    @Test
+    public void testMaxSize() {
+        final ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(10, 5, MINUTES);
+        for (int i = 0; i < 100; ++i) {
+            cache.put(i, i);
+        }
+        assertEquals(10L, cache.size());
+        assertEquals(90L, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testEvictionSweep() {
+        final ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(50, 5, MINUTES);
+        for (int i = 0; i < 1000; ++i) {
+            cache.put(i * 7919, i);
+        }
+        // Only the most recent entries should remain, wherever they sit in the map
+        assertEquals(50L, cache.size());
+        int stale = 0;
+        for (int i = 0; i < 950; ++i) {
+            if (cache.getIfPresent(i * 7919) != null) {
+                stale += 1;
+            }
+        }
+        assertTrue(stale < 10);
+    }
+
+    @Test
+    public void testExpiry() {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 1, NANOSECONDS);
+        cache.put("a", "b");
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 5, MINUTES);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+        cache.invalidate("a");
+        assertNull(cache.getIfPresent("a"));
+        cache.invalidateIf("b"::equals, "3"::equals);
+        assertEquals(0L, cache.size());
+        cache.put("a", "1");
+        cache.invalidateAll();
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void testGeneration() {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 5, MINUTES);
+        cache.put("a", "1", 0L);
+        cache.advance(1L);
+        assertEquals(0L, cache.size());
+        assertNull(cache.getIfPresent("a"));
+
+        cache.put("a", "1", 0L);
+        assertNull(cache.getIfPresent("a"));
+        assertEquals("2", cache.get("a", k -> "2", 0L));
+        assertNull(cache.getIfPresent("a"));
+        cache.put("a", "3", 1L);
+        assertEquals("3", cache.getIfPresent("a"));
+
+        cache.advance(0L);
+        assertEquals("3", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testConcurrentInvalidation() {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 5, MINUTES);
+        assertEquals("1", cache.get("a", k -> {
+            cache.invalidate("a");
+            return "1";
+        }));
+        assertNull(cache.getIfPresent("a"));
+
+        // Invalidating other entries does not discard a concurrent load
+        assertEquals("1", cache.get("a", k -> {
+            cache.invalidate("b");
+            return "1";
+        }));
+        assertEquals("1", cache.getIfPresent("a"));
+
+        final long stamp = cache.stamp();
+        cache.invalidateIf("c"::equals, "2"::equals);
+        cache.put("a", "2", 0L, stamp);
+        assertEquals("1", cache.getIfPresent("a"));
+        cache.put("a", "3", 0L, stamp);
+        assertEquals("3", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testInvalidationLogOverrun() {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 5, MINUTES);
+        final long stamp = cache.stamp();
+        for (int i = 0; i < 100; ++i) {
+            cache.invalidate("b" + i);
+        }
+        cache.put("a", "1", 0L, stamp);
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testCoalescedLoad() throws Exception {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 5, MINUTES);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<String> first = executor.submit(() -> cache.get("a", k -> {
+                loads.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "1";
+            }));
+            started.await();
+            final Future<String> second = executor.submit(() -> cache.get("a", k -> {
+                loads.incrementAndGet();
+                return "2";
+            }));
+            release.countDown();
+            assertEquals("1", first.get());
+            assertEquals("1", second.get());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReentrantLoad() {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 5, MINUTES);
+        assertEquals("12", cache.get("a", k -> cache.get("a", j -> "1") + "2"));
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSize() {
+        new ExpiringCache<String, String>(-1, 5, MINUTES);
+    }
+}
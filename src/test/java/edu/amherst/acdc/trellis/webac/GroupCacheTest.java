@@ -0,0 +1,118 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class GroupCacheTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final IRI agent = rdf.createIRI("info:user/agent");
+
+    private final IRI other = rdf.createIRI("info:user/other");
+
+    private final IRI staff = rdf.createIRI("info:group/staff");
+
+    private final IRI library = rdf.createIRI("info:group/library");
+
+    private final IRI college = rdf.createIRI("info:group/college");
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final Map<IRI, List<IRI>> directory = new HashMap<>();
+
+    private final Function<IRI, List<IRI>> loader = id -> {
+        calls.incrementAndGet();
+        return directory.getOrDefault(id, emptyList());
+    };
+
+    @Test
+    public void testDirectGroups() {
+        directory.put(agent, asList(staff));
+        directory.put(staff, asList(library));
+        final GroupCache cache = new GroupCache(10, 5, MINUTES);
+
+        final Set<IRI> groups = cache.get(agent, loader, 0L);
+        assertEquals(1, groups.size());
+        assertTrue(groups.contains(staff));
+        assertEquals(groups, cache.get(agent, loader, 0L));
+        assertEquals(1, calls.get());
+        assertEquals(1L, cache.getHitCount());
+    }
+
+    @Test
+    public void testNestedGroups() {
+        directory.put(agent, asList(staff));
+        directory.put(staff, asList(library));
+        directory.put(library, asList(college, staff));
+        directory.put(college, asList(agent));
+        final GroupCache cache = new GroupCache(10, 5, MINUTES, true);
+
+        final Set<IRI> groups = cache.get(agent, loader, 0L);
+        assertEquals(3, groups.size());
+        assertTrue(groups.contains(staff));
+        assertTrue(groups.contains(library));
+        assertTrue(groups.contains(college));
+        assertFalse(groups.contains(agent));
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void testInvalidateGroup() {
+        directory.put(agent, asList(staff));
+        directory.put(other, asList(library));
+        final GroupCache cache = new GroupCache(10, 5, MINUTES);
+        cache.get(agent, loader, 0L);
+        cache.get(other, loader, 0L);
+        assertEquals(2L, cache.size());
+
+        assertEquals(asList(agent), cache.invalidateMembers(staff));
+        assertEquals(1L, cache.size());
+        cache.invalidate(other);
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void testDisabled() {
+        directory.put(agent, asList(staff));
+        final GroupCache cache = new GroupCache(0, 0, MINUTES);
+        assertTrue(cache.get(agent, loader, 0L).contains(staff));
+        assertTrue(cache.get(agent, loader, 0L).contains(staff));
+        assertEquals(2, calls.get());
+        assertEquals(0L, cache.size());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class GroupSetTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final IRI staff = rdf.createIRI("info:group/staff");
+
+    private final IRI faculty = rdf.createIRI("info:group/faculty");
+
+    @Test
+    public void testSet() {
+        final GroupSet groups = new GroupSet(asList(staff, faculty, staff));
+        assertEquals(2, groups.size());
+        assertTrue(groups.contains(faculty));
+        assertEquals(new HashSet<>(asList(staff, faculty)), groups);
+    }
+
+    @Test
+    public void testIds() {
+        final IriDictionary dictionary = new IriDictionary();
+        final int staffId = dictionary.intern(staff);
+        final GroupSet groups = new GroupSet(asList(staff));
+        final int[] ids = groups.getIds(dictionary);
+        assertArrayEquals(new int[]{staffId}, ids);
+        dictionary.intern(faculty);
+        assertSame(ids, groups.getIds(dictionary));
+
+        final IriDictionary other = new IriDictionary();
+        other.intern(faculty);
+        assertArrayEquals(new int[]{other.intern(staff)}, groups.getIds(other));
+    }
+
+    @Test
+    public void testAbsentGroups() {
+        final IriDictionary dictionary = new IriDictionary();
+        final GroupSet groups = new GroupSet(asList(staff, faculty));
+        assertArrayEquals(new int[0], groups.getIds(dictionary));
+
+        final int facultyId = dictionary.intern(faculty);
+        assertArrayEquals(new int[]{facultyId}, groups.getIds(dictionary));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class HistogramMetricsTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final IRI resource = rdf.createIRI("info:trellis/resource");
+
+    private void check(final HistogramMetrics metrics, final IRI acl) {
+        final AuthorizationTrace trace = AuthorizationTrace.start(metrics, resource);
+        trace.acl(acl, 1);
+        trace.finish(metrics, ACL.Read::equals, true);
+    }
+
+    @Test
+    public void testBoundedAcls() {
+        final HistogramMetrics metrics = new HistogramMetrics(10);
+        final IRI busy = rdf.createIRI("info:trellis/acl/busy");
+        for (int i = 0; i < 100; ++i) {
+            check(metrics, busy);
+        }
+        for (int i = 0; i < 1000; ++i) {
+            check(metrics, rdf.createIRI("info:trellis/acl/" + i));
+        }
+        assertEquals(10, metrics.getDecisionLatencyByAcl().size());
+        assertEquals(100L, metrics.getDecisionLatencyByAcl().get(busy).getCount());
+        assertTrue(metrics.getDecisionLatencyByAcl().containsKey(rdf.createIRI("info:trellis/acl/999")));
+        assertEquals(1100L, metrics.getDecisionLatency().getCount());
+    }
+
+    @Test
+    public void testNoAcls() {
+        final HistogramMetrics metrics = new HistogramMetrics(0);
+        check(metrics, rdf.createIRI("info:trellis/acl"));
+        assertEquals(0, metrics.getDecisionLatencyByAcl().size());
+        assertEquals(1L, metrics.getGrantCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLimit() {
+        new HistogramMetrics(-1);
+    }
+}
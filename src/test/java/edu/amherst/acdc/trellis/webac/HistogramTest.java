@@ -0,0 +1,56 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class HistogramTest {
+
+    @Test
+    public void testEmpty() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0L, histogram.getCount());
+        assertEquals(0L, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0L, histogram.getPercentile(99.0));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final Histogram histogram = new Histogram();
+        for (long i = 1; i <= 100; ++i) {
+            histogram.record(i);
+        }
+        histogram.record(-5L);
+        assertEquals(101L, histogram.getCount());
+        assertEquals(5050L, histogram.getSum());
+        assertEquals(100L, histogram.getMax());
+        assertEquals(1L, histogram.getPercentile(0.0));
+        assertEquals(63L, histogram.getPercentile(50.0));
+        assertEquals(100L, histogram.getPercentile(99.0));
+        assertEquals(100L, histogram.getPercentile(100.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new Histogram().getPercentile(101.0);
+    }
+}
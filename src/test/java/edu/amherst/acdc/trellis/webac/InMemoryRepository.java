@@ -0,0 +1,339 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Optional.empty;
+import static java.util.Optional.ofNullable;
+import static edu.amherst.acdc.trellis.vocabulary.RDF.type;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.AgentService;
+import edu.amherst.acdc.trellis.spi.ResourceService;
+import edu.amherst.acdc.trellis.spi.Session;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.Triple;
+import org.apache.commons.rdf.simple.SimpleRDF;
+
+/**
+ * A thread-safe, in-memory stand-in for a Trellis repository, for use in tests and benchmarks.
+ *
+ * <p>The {@link ResourceService}, {@link BulkResourceService}, {@link AgentService}, {@link Session}
+ * and {@link Resource} objects handed out by this class are dynamic proxies: only the methods used
+ * by the WebAC service are backed by data, and any other method returns an empty value.</p>
+ *
+ * @author agent
+ */
+public class InMemoryRepository {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final Map<IRI, Resource> resources = new ConcurrentHashMap<>();
+
+    private final Map<IRI, Set<IRI>> children = new ConcurrentHashMap<>();
+
+    private final Map<IRI, Instant> modified = new ConcurrentHashMap<>();
+
+    private final Map<IRI, Set<IRI>> groups = new ConcurrentHashMap<>();
+
+    private final Set<IRI> admins = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder finds = new LongAdder();
+
+    private final LongAdder groupLookups = new LongAdder();
+
+    private final LongAdder bulkFinds = new LongAdder();
+
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+
+    private volatile int batchSize = Integer.MAX_VALUE;
+
+    private final ResourceService resourceService = proxy(ResourceService.class, (method, args) -> {
+        if ("find".equals(method.getName())) {
+            finds.increment();
+            return ofNullable(resources.get((IRI) args[1]));
+        }
+        return null;
+    });
+
+    private final BulkResourceService bulkResourceService = proxy(BulkResourceService.class, (method, args) -> {
+        switch (method.getName()) {
+            case "find":
+                finds.increment();
+                return ofNullable(resources.get((IRI) args[1]));
+            case "findAuthorizations":
+                bulkFinds.increment();
+                return ((List<?>) args[1]).stream().map(resources::get).filter(Objects::nonNull)
+                    .filter(resource -> resource.getTypes().anyMatch(ACL.Authorization::equals));
+            case "getBatchSize":
+                return batchSize;
+            default:
+                return null;
+        }
+    });
+
+    private final AgentService agentService = proxy(AgentService.class, (method, args) -> {
+        if ("isAdmin".equals(method.getName())) {
+            return admins.contains((IRI) args[0]);
+        } else if ("getGroups".equals(method.getName())) {
+            groupLookups.increment();
+            return groups.getOrDefault((IRI) args[0], emptySet()).stream();
+        }
+        return null;
+    });
+
+    /**
+     * @return the resource service
+     */
+    public ResourceService getResourceService() {
+        return resourceService;
+    }
+
+    /**
+     * @return a resource service that also loads authorizations in bulk
+     */
+    public BulkResourceService getBulkResourceService() {
+        return bulkResourceService;
+    }
+
+    /**
+     * @return the agent service
+     */
+    public AgentService getAgentService() {
+        return agentService;
+    }
+
+    /**
+     * @return the number of calls to {@code ResourceService::find}
+     */
+    public long getFindCount() {
+        return finds.sum();
+    }
+
+    /**
+     * @return the number of calls to {@code BulkResourceService::findAuthorizations}
+     */
+    public long getBulkFindCount() {
+        return bulkFinds.sum();
+    }
+
+    /**
+     * Set the batch size reported by the bulk resource service.
+     *
+     * @param size the maximum number of identifiers per call
+     */
+    public void setBatchSize(final int size) {
+        this.batchSize = size;
+    }
+
+    /**
+     * @return the number of calls to {@code AgentService::getGroups}
+     */
+    public long getGroupLookupCount() {
+        return groupLookups.sum();
+    }
+
+    /**
+     * Create a session.
+     *
+     * @param agent the agent
+     * @param delegatedBy the delegating agent, may be null
+     * @return the session
+     */
+    public Session session(final IRI agent, final IRI delegatedBy) {
+        return proxy(Session.class, (method, args) -> {
+            if ("getAgent".equals(method.getName())) {
+                return agent;
+            } else if ("getDelegatedBy".equals(method.getName())) {
+                return ofNullable(delegatedBy);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Add or replace a resource.
+     *
+     * @param identifier the resource identifier
+     * @param parent the parent identifier, may be null
+     * @param acl the ACL identifier, may be null
+     * @param types the rdf:type values of the resource
+     */
+    public void put(final IRI identifier, final IRI parent, final IRI acl, final IRI... types) {
+        final List<Triple> triples = new ArrayList<>();
+        for (final IRI t : types) {
+            triples.add(rdf.createTriple(identifier, type, t));
+        }
+        put(identifier, parent, acl, Arrays.asList(types), triples);
+    }
+
+    /**
+     * Add or replace an authorization inside an ACL container.
+     *
+     * @param acl the ACL identifier
+     * @param identifier the authorization identifier
+     * @param triples the triples of the authorization, in addition to its rdf:type
+     */
+    public void putAuthorization(final IRI acl, final IRI identifier, final Triple... triples) {
+        final List<Triple> data = new ArrayList<>(Arrays.asList(triples));
+        data.add(rdf.createTriple(identifier, type, ACL.Authorization));
+        put(identifier, acl, null, Arrays.asList(ACL.Authorization), data);
+    }
+
+    /**
+     * Attach an ACL to an existing resource, or remove it.
+     *
+     * @param identifier the resource identifier
+     * @param acl the ACL identifier, or null to remove the ACL
+     */
+    public void setAccessControl(final IRI identifier, final IRI acl) {
+        final Resource resource = resources.get(identifier);
+        if (resource != null) {
+            put(identifier, resource.getParent().orElse(null), acl, resource.getTypes().toArray(IRI[]::new));
+        }
+    }
+
+    /**
+     * Remove a resource.
+     *
+     * @param identifier the resource identifier
+     */
+    public void delete(final IRI identifier) {
+        final Resource resource = resources.remove(identifier);
+        if (resource != null) {
+            resource.getParent().map(children::get).ifPresent(siblings -> siblings.remove(identifier));
+            resource.getParent().ifPresent(this::touch);
+        }
+    }
+
+    /**
+     * Set the groups for an agent.
+     *
+     * @param agent the agent
+     * @param memberships the groups
+     */
+    public void setGroups(final IRI agent, final IRI... memberships) {
+        groups.put(agent, ConcurrentHashMap.newKeySet());
+        groups.get(agent).addAll(Arrays.asList(memberships));
+    }
+
+    /**
+     * Set whether an agent is an administrator.
+     *
+     * @param agent the agent
+     * @param admin true if the agent is an administrator
+     */
+    public void setAdmin(final IRI agent, final boolean admin) {
+        if (admin) {
+            admins.add(agent);
+        } else {
+            admins.remove(agent);
+        }
+    }
+
+    private void put(final IRI identifier, final IRI parent, final IRI acl, final List<IRI> types,
+            final List<Triple> triples) {
+        final Optional<IRI> parentIRI = ofNullable(parent);
+        final Optional<IRI> aclIRI = ofNullable(acl);
+        final List<IRI> typeList = unmodifiableList(new ArrayList<>(types));
+        final List<Triple> tripleList = unmodifiableList(new ArrayList<>(triples));
+        touch(identifier);
+        final Set<IRI> contained = children.computeIfAbsent(identifier, k -> ConcurrentHashMap.newKeySet());
+        resources.put(identifier, proxy(Resource.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getIdentifier":
+                    return identifier;
+                case "getParent":
+                    return parentIRI;
+                case "getAccessControl":
+                    return aclIRI;
+                case "getTypes":
+                    return typeList.stream();
+                case "getChildren":
+                    return new ArrayList<>(contained).stream();
+                case "getModified":
+                    return modified.get(identifier);
+                case "stream":
+                    return tripleList.stream();
+                default:
+                    return null;
+            }
+        }));
+        parentIRI.ifPresent(id -> children.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(identifier));
+        // Like an LDP server, a container is modified whenever one of its children is written or removed
+        parentIRI.ifPresent(this::touch);
+    }
+
+    private void touch(final IRI identifier) {
+        // Every write gets a distinct modification time, however quickly they follow each other
+        modified.put(identifier, Instant.ofEpochMilli(clock.incrementAndGet()));
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object apply(Method method, Object[] args);
+    }
+
+    private static <T> T proxy(final Class<T> type, final Handler handler) {
+        return type.cast(Proxy.newProxyInstance(InMemoryRepository.class.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "toString":
+                                return type.getSimpleName() + "@" + System.identityHashCode(proxy);
+                            default:
+                                final Object value = handler.apply(method, args);
+                                return value != null ? value : defaultValue(method.getReturnType());
+                        }
+                    }));
+    }
+
+    private static Object defaultValue(final Class<?> returnType) {
+        if (Optional.class.equals(returnType)) {
+            return empty();
+        } else if (Stream.class.equals(returnType)) {
+            return Stream.empty();
+        } else if (Boolean.class.equals(returnType) || boolean.class.equals(returnType)) {
+            return false;
+        } else if (int.class.equals(returnType)) {
+            return 0;
+        } else if (long.class.equals(returnType)) {
+            return 0L;
+        }
+        return null;
+    }
+}
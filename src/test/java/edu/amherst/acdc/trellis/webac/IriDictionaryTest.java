@@ -0,0 +1,94 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class IriDictionaryTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final IriDictionary dictionary = new IriDictionary();
+
+    @Test
+    public void testIntern() {
+        final IRI agent = rdf.createIRI("info:user/dictionary-agent");
+        final IRI group = rdf.createIRI("info:group/dictionary-group");
+        final int id = dictionary.intern(agent);
+        assertEquals(id, dictionary.intern(rdf.createIRI("info:user/dictionary-agent")));
+        assertEquals(id, dictionary.lookup(agent));
+        assertSame(agent, dictionary.get(id));
+
+        final int groupId = dictionary.intern(group);
+        assertNotEquals(id, groupId);
+        assertArrayEquals(new IRI[]{agent, group}, dictionary.get(new int[]{id, groupId}));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    public void testLookup() {
+        final IRI absent = rdf.createIRI("info:user/dictionary-absent");
+        assertEquals(IriDictionary.ABSENT, dictionary.lookup(absent));
+        assertEquals(IriDictionary.ABSENT, dictionary.lookup((IRI) null));
+        assertEquals(0, dictionary.size());
+
+        final IRI present = rdf.createIRI("info:user/dictionary-present");
+        final int id = dictionary.intern(present);
+        assertArrayEquals(new int[]{id}, dictionary.lookup(asList(absent, present)));
+    }
+
+    @Test
+    public void testSeparateDictionaries() {
+        final IRI agent = rdf.createIRI("info:user/dictionary-agent");
+        dictionary.intern(agent);
+        final IriDictionary other = new IriDictionary();
+        assertEquals(IriDictionary.ABSENT, other.lookup(agent));
+        assertEquals(0, other.size());
+    }
+
+    @Test
+    public void testFull() {
+        final IriDictionary small = new IriDictionary(2);
+        small.intern(rdf.createIRI("info:user/one"));
+        assertFalse(small.isFull());
+        small.intern(rdf.createIRI("info:user/two"));
+        assertTrue(small.isFull());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownId() {
+        dictionary.get(Integer.MAX_VALUE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new IriDictionary(0);
+    }
+}
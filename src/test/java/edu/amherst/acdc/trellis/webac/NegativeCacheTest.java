@@ -0,0 +1,114 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.simple.SimpleRDF;
+import org.junit.Test;
+
+/**
+ * @author agent
+ */
+public class NegativeCacheTest {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private final IRI container = rdf.createIRI("info:trellis/container");
+
+    private final IRI resource = rdf.createIRI("info:trellis/container/resource");
+
+    private final IRI other = rdf.createIRI("info:trellis/other");
+
+    private final IRI acl = rdf.createIRI("info:trellis/acl");
+
+    private final IRI agent = rdf.createIRI("info:user/agent");
+
+    private final DecisionCache.Key key = new DecisionCache.Key(agent, null,
+            new EffectiveAcl(container, emptyList(), acl));
+
+    private final DecisionCache.Decision denial = new DecisionCache.Decision(emptySet(), null);
+
+    @Test
+    public void testMissing() {
+        final NegativeCache cache = new NegativeCache(10, 5, MINUTES);
+        assertFalse(cache.isMissing(resource));
+        cache.putMissing(resource, 0L, cache.missingStamp());
+        cache.putMissing(other, 0L, cache.missingStamp());
+        assertTrue(cache.isMissing(resource));
+        assertEquals(2L, cache.size());
+
+        cache.invalidate(container);
+        assertFalse(cache.isMissing(resource));
+        assertTrue(cache.isMissing(other));
+    }
+
+    @Test
+    public void testDenied() {
+        final NegativeCache cache = new NegativeCache(10, 5, MINUTES);
+        cache.putDenied(key, new DecisionCache.Decision(singleton(ACL.Read), null), 0L, cache.deniedStamp());
+        assertNull(cache.getDenied(key));
+
+        cache.putDenied(key, denial, 0L, cache.deniedStamp());
+        assertNotNull(cache.getDenied(key));
+        cache.invalidate(other);
+        assertNotNull(cache.getDenied(key));
+        cache.invalidate(rdf.createIRI("info:trellis/acl/auth"));
+        assertNull(cache.getDenied(key));
+
+        cache.putDenied(key, denial, 0L, cache.deniedStamp());
+        cache.invalidateAgent(agent);
+        assertNull(cache.getDenied(key));
+    }
+
+    @Test
+    public void testStaleWrites() {
+        final NegativeCache cache = new NegativeCache(10, 5, MINUTES);
+        final long stamp = cache.missingStamp();
+        cache.invalidate(container);
+        cache.putMissing(resource, 0L, stamp);
+        assertFalse(cache.isMissing(resource));
+
+        final long otherStamp = cache.missingStamp();
+        cache.invalidate(other);
+        cache.putMissing(resource, 0L, otherStamp);
+        assertTrue(cache.isMissing(resource));
+
+        cache.advance(1L);
+        cache.putDenied(key, denial, 0L, cache.deniedStamp());
+        assertNull(cache.getDenied(key));
+    }
+
+    @Test
+    public void testDisabled() {
+        final NegativeCache cache = new NegativeCache(0, 0, MINUTES);
+        cache.putMissing(resource, 0L, cache.missingStamp());
+        assertFalse(cache.isMissing(resource));
+        assertEquals(0L, cache.size());
+        assertEquals(0L, cache.getMissCount());
+    }
+}
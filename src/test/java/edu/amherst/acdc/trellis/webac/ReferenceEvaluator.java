@@ -0,0 +1,106 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static edu.amherst.acdc.trellis.api.Resource.TripleContext.USER_MANAGED;
+import static java.util.Collections.disjoint;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.AgentService;
+import edu.amherst.acdc.trellis.spi.ResourceService;
+import edu.amherst.acdc.trellis.spi.Session;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.Triple;
+
+/**
+ * A straightforward, uncached WebAC evaluator, used as the expected result in tests.
+ *
+ * <p>Every check walks the resource hierarchy, reads each authorization in the governing ACL
+ * and matches its raw triples, without any of the indexes or caches of the WebAC service.</p>
+ *
+ * @author agent
+ */
+public class ReferenceEvaluator {
+
+    private final ResourceService resourceService;
+
+    private final AgentService agentService;
+
+    /**
+     * Create a reference evaluator.
+     *
+     * @param resourceService the resource service
+     * @param agentService the agent service
+     */
+    public ReferenceEvaluator(final ResourceService resourceService, final AgentService agentService) {
+        this.resourceService = resourceService;
+        this.agentService = agentService;
+    }
+
+    /**
+     * Check whether a mode is granted to a session on a resource.
+     *
+     * @param session the session
+     * @param identifier the resource identifier
+     * @param mode the access mode
+     * @return true if access is granted
+     */
+    public boolean isGranted(final Session session, final IRI identifier, final IRI mode) {
+        if (agentService.isAdmin(session.getAgent())) {
+            return true;
+        }
+        Optional<Resource> resource = resourceService.find(session, identifier);
+        while (resource.isPresent() && !resource.get().getAccessControl().isPresent()) {
+            resource = resource.get().getParent().flatMap(id -> resourceService.find(session, id));
+        }
+        if (!resource.isPresent()) {
+            return false;
+        }
+
+        final Resource target = resource.get();
+        final Set<IRI> types = target.getTypes().collect(toSet());
+        final Set<IRI> groups = agentService.getGroups(session.getAgent()).collect(toSet());
+        return resourceService.find(session, target.getAccessControl().get()).map(acl -> acl.getChildren()
+                .map(id -> resourceService.find(session, id)).filter(Optional::isPresent).map(Optional::get)
+                .filter(auth -> auth.getTypes().anyMatch(ACL.Authorization::equals))
+                .anyMatch(auth -> grants(auth, session, groups, target.getIdentifier(), types, mode)))
+            .orElse(false);
+    }
+
+    private static boolean grants(final Resource auth, final Session session, final Set<IRI> groups,
+            final IRI ancestor, final Set<IRI> types, final IRI mode) {
+        final List<Triple> triples = auth.stream(USER_MANAGED)
+            .filter(triple -> triple.getSubject().equals(auth.getIdentifier())).collect(toList());
+        final Set<IRI> agents = objects(triples, ACL.agent);
+        return objects(triples, ACL.mode).contains(mode) &&
+            (objects(triples, ACL.accessTo).contains(ancestor) ||
+             !disjoint(objects(triples, ACL.accessToClass), types)) &&
+            (agents.contains(session.getAgent()) || !disjoint(objects(triples, ACL.agentGroup), groups)) &&
+            session.getDelegatedBy().map(agents::contains).orElse(true);
+    }
+
+    private static Set<IRI> objects(final List<Triple> triples, final IRI predicate) {
+        return triples.stream().filter(triple -> triple.getPredicate().equals(predicate))
+            .map(Triple::getObject).filter(IRI.class::isInstance).map(IRI.class::cast).collect(toSet());
+    }
+}
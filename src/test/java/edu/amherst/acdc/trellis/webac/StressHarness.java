@@ -0,0 +1,456 @@
+/*
+ * Copyright Amherst College
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.amherst.acdc.trellis.webac;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.amherst.acdc.trellis.api.Resource;
+import edu.amherst.acdc.trellis.spi.ResourceService;
+import edu.amherst.acdc.trellis.spi.Session;
+import edu.amherst.acdc.trellis.vocabulary.ACL;
+import org.apache.commons.rdf.api.IRI;
+import org.apache.commons.rdf.api.RDF;
+import org.apache.commons.rdf.api.Triple;
+import org.apache.commons.rdf.simple.SimpleRDF;
+
+/**
+ * A multi-threaded load harness for the WebAC service.
+ *
+ * <p>Half of the containers in the generated repository are never modified, and every check
+ * against them is compared with the {@link ReferenceEvaluator} while the other half receive
+ * concurrent ACL changes, each followed by the matching invalidation. During the run the
+ * ResourceService or the AgentService is also unbound and then bound again, the former
+ * alternating between two equivalent services. A check that overlaps one of those gaps may
+ * be denied access that it would otherwise have, but must never be granted more. Once the
+ * run is over, {@link #verify} compares every resource with the reference evaluator.</p>
+ *
+ * <p>Running this class reports the throughput for thread counts from one up to the number
+ * of available processors.</p>
+ *
+ * @author agent
+ */
+public class StressHarness {
+
+    private static final RDF rdf = new SimpleRDF();
+
+    private static final IRI[] MODES = new IRI[] { ACL.Read, ACL.Write, ACL.Append, ACL.Control };
+
+    private static final IRI CONTAINER = rdf.createIRI("info:type/Container");
+
+    private static final int GROUPS = 4;
+
+    private final InMemoryRepository repository = new InMemoryRepository();
+
+    private final ReferenceEvaluator reference = new ReferenceEvaluator(repository.getResourceService(),
+            repository.getAgentService());
+
+    private final IRI delegator = rdf.createIRI("info:user/delegator");
+
+    private final List<IRI> agents = new ArrayList<>();
+
+    private final List<Session> sessions = new ArrayList<>();
+
+    private final List<IRI> stableResources = new ArrayList<>();
+
+    private final List<IRI> stableAcls = new ArrayList<>();
+
+    private final List<IRI> churnedResources = new ArrayList<>();
+
+    private final List<IRI> churnedContainers = new ArrayList<>();
+
+    private final Map<String, Boolean> expected = new HashMap<>();
+
+    private final Map<IRI, Long> expectedSizes = new HashMap<>();
+
+    private final AtomicLong authorizations = new AtomicLong();
+
+    // Odd while a service is unbound
+    private final AtomicLong unbinds = new AtomicLong();
+
+    private final Object rebinding = new Object();
+
+    private ResourceService resourceService;
+
+    private final WebACService service;
+
+    /**
+     * Create a harness and populate its repository.
+     *
+     * @param service the service under test; the repository's services are bound to it
+     * @param containers the number of containers, each with its own ACL
+     * @param resources the number of resources in each container
+     * @param agentCount the number of agents
+     * @param seed the seed for the generated authorizations
+     */
+    public StressHarness(final WebACService service, final int containers, final int resources,
+            final int agentCount, final long seed) {
+        this.service = service;
+        final Random random = new Random(seed);
+
+        for (int i = 0; i < agentCount; ++i) {
+            final IRI agent = rdf.createIRI("info:user/agent" + i);
+            agents.add(agent);
+            repository.setGroups(agent, group(i));
+            sessions.add(repository.session(agent, null));
+            if (i % 4 == 3) {
+                sessions.add(repository.session(agent, delegator));
+            }
+        }
+        repository.setAdmin(agents.get(0), true);
+
+        final IRI root = rdf.createIRI("info:stress");
+        final IRI rootAcl = rdf.createIRI("info:stress/acl");
+        repository.put(root, null, rootAcl, CONTAINER);
+        repository.put(rootAcl, root, null);
+        addAuthorization(random, rootAcl, root);
+
+        for (int i = 0; i < containers; ++i) {
+            final IRI container = rdf.createIRI(root.getIRIString() + "/c" + i);
+            final IRI acl = rdf.createIRI(container.getIRIString() + "/acl");
+            final boolean stable = i < (containers + 1) / 2;
+            repository.put(container, root, acl, CONTAINER);
+            repository.put(acl, container, null);
+            for (int j = 0; j < 4; ++j) {
+                addAuthorization(random, acl, container);
+            }
+            for (int j = 0; j < resources; ++j) {
+                final IRI resource = rdf.createIRI(container.getIRIString() + "/r" + j);
+                repository.put(resource, container, null);
+                (stable ? stableResources : churnedResources).add(resource);
+            }
+            if (stable) {
+                stableAcls.add(acl);
+                expectedSizes.put(acl, 4L);
+            } else {
+                churnedContainers.add(container);
+            }
+        }
+
+        for (int s = 0; s < sessions.size(); ++s) {
+            for (final IRI resource : stableResources) {
+                for (final IRI mode : MODES) {
+                    expected.put(key(s, resource, mode), reference.isGranted(sessions.get(s), resource, mode));
+                }
+            }
+        }
+
+        resourceService = repository.getResourceService();
+        service.bind(resourceService);
+        service.bind(repository.getAgentService());
+    }
+
+    /**
+     * Run a mixed workload.
+     *
+     * @param threads the number of threads
+     * @param operations the total number of operations
+     * @return the result
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public Result run(final int threads, final int operations) throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final LongAdder mismatches = new LongAdder();
+        final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        final List<Future<?>> futures = new ArrayList<>();
+        final int perThread = operations / threads;
+        try {
+            for (int t = 0; t < threads; ++t) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < perThread; ++i) {
+                        try {
+                            if (!step(random)) {
+                                mismatches.increment();
+                            }
+                        } catch (final RuntimeException ex) {
+                            errors.add(ex);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            final long begin = nanoTime();
+            start.countDown();
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (final ExecutionException ex) {
+                    errors.add(ex.getCause());
+                }
+            }
+            return new Result(perThread * threads, mismatches.sum(), new ArrayList<>(errors), nanoTime() - begin);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Compare every resource, session and mode with the reference evaluator.
+     *
+     * <p>This must only be called while no workload is running.</p>
+     *
+     * @return the number of mismatched decisions
+     */
+    public int verify() {
+        final List<IRI> resources = new ArrayList<>(stableResources);
+        resources.addAll(churnedResources);
+        int mismatches = 0;
+        for (final Session session : sessions) {
+            for (final IRI resource : resources) {
+                for (final IRI mode : MODES) {
+                    if (service.anyMatch(session, resource, mode::equals) !=
+                            reference.isGranted(session, resource, mode)) {
+                        mismatches += 1;
+                    }
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    private boolean step(final Random random) {
+        final int op = random.nextInt(100);
+        final int s = random.nextInt(sessions.size());
+        final long epoch = unbinds.get();
+        if (op < 65) {
+            final IRI resource = pick(random, stableResources);
+            final IRI mode = MODES[random.nextInt(MODES.length)];
+            final boolean granted = service.anyMatch(sessions.get(s), resource, mode::equals);
+            return granted == expected.get(key(s, resource, mode)) || !granted && overlapsUnbind(epoch);
+        } else if (op < 75) {
+            final IRI mode = MODES[random.nextInt(MODES.length)];
+            service.anyMatch(sessions.get(s), pick(random, churnedResources), mode::equals);
+        } else if (op < 82) {
+            final IRI acl = pick(random, stableAcls);
+            final long count = service.getAuthorizations(sessions.get(s), acl).count();
+            return count == expectedSizes.get(acl) || count == 0L && overlapsUnbind(epoch);
+        } else if (op < 88) {
+            final IRI resource = pick(random, stableResources);
+            final Set<AccessMode> modes = EnumSet.noneOf(AccessMode.class);
+            for (final AccessMode mode : AccessMode.values()) {
+                if (expected.get(key(s, resource, mode.getIRI()))) {
+                    modes.add(mode);
+                }
+            }
+            final Set<AccessMode> actual = service.getAccessModes(sessions.get(s), resource);
+            return actual.equals(modes) || modes.containsAll(actual) && overlapsUnbind(epoch);
+        } else if (op < 98) {
+            mutate(random);
+        } else {
+            rebind(random);
+        }
+        return true;
+    }
+
+    private void rebind(final Random random) {
+        synchronized (rebinding) {
+            unbinds.incrementAndGet();
+            try {
+                if (random.nextBoolean()) {
+                    service.unbind(resourceService);
+                    resourceService = random.nextBoolean() ? repository.getBulkResourceService() :
+                        repository.getResourceService();
+                    service.bind(resourceService);
+                } else {
+                    service.unbind(repository.getAgentService());
+                    service.bind(repository.getAgentService());
+                }
+            } finally {
+                unbinds.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean overlapsUnbind(final long epoch) {
+        return epoch % 2 == 1 || unbinds.get() != epoch;
+    }
+
+    private void mutate(final Random random) {
+        final IRI container = pick(random, churnedContainers);
+        final IRI acl = rdf.createIRI(container.getIRIString() + "/acl");
+        switch (random.nextInt(3)) {
+            case 0:
+                service.invalidate(addAuthorization(random, acl, container));
+                break;
+            case 1:
+                final List<IRI> children = repository.getResourceService().find(sessions.get(0), acl)
+                    .map(res -> res.getChildren().collect(toList()))
+                    .orElse(new ArrayList<>());
+                if (!children.isEmpty()) {
+                    final IRI child = pick(random, children);
+                    repository.delete(child);
+                    service.invalidate(child);
+                }
+                break;
+            default:
+                final boolean hasAcl = repository.getResourceService().find(sessions.get(0), container)
+                    .flatMap(Resource::getAccessControl).isPresent();
+                repository.setAccessControl(container, hasAcl ? null : acl);
+                service.invalidate(container);
+        }
+    }
+
+    private IRI addAuthorization(final Random random, final IRI acl, final IRI target) {
+        final IRI auth = rdf.createIRI(acl.getIRIString() + "/auth" + authorizations.incrementAndGet());
+        final List<Triple> triples = new ArrayList<>();
+        if (random.nextBoolean()) {
+            triples.add(rdf.createTriple(auth, ACL.agent, pick(random, agents)));
+        } else {
+            triples.add(rdf.createTriple(auth, ACL.agentGroup, group(random.nextInt(GROUPS))));
+        }
+        if (random.nextInt(4) == 0) {
+            triples.add(rdf.createTriple(auth, ACL.agent, delegator));
+        }
+        if (random.nextInt(4) == 0) {
+            triples.add(rdf.createTriple(auth, ACL.accessToClass, CONTAINER));
+        } else {
+            triples.add(rdf.createTriple(auth, ACL.accessTo, target));
+        }
+        triples.add(rdf.createTriple(auth, ACL.mode, MODES[random.nextInt(MODES.length)]));
+        for (final IRI mode : MODES) {
+            if (random.nextInt(3) == 0) {
+                triples.add(rdf.createTriple(auth, ACL.mode, mode));
+            }
+        }
+        repository.putAuthorization(acl, auth, triples.toArray(new Triple[0]));
+        return auth;
+    }
+
+    private static IRI group(final int index) {
+        return rdf.createIRI("info:group/g" + (index % GROUPS));
+    }
+
+    private static String key(final int session, final IRI resource, final IRI mode) {
+        return session + " " + resource.getIRIString() + " " + mode.getIRIString();
+    }
+
+    private static <T> T pick(final Random random, final List<T> items) {
+        return items.get(random.nextInt(items.size()));
+    }
+
+    /**
+     * The outcome of a workload run.
+     */
+    public static final class Result {
+        private final long operations;
+        private final long mismatches;
+        private final List<Throwable> errors;
+        private final long elapsed;
+
+        private Result(final long operations, final long mismatches, final List<Throwable> errors,
+                final long elapsed) {
+            this.operations = operations;
+            this.mismatches = mismatches;
+            this.errors = errors;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * @return the number of operations
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * @return the number of checks that disagreed with the reference evaluator
+         */
+        public long getMismatches() {
+            return mismatches;
+        }
+
+        /**
+         * @return the exceptions thrown by operations
+         */
+        public List<Throwable> getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the throughput, in operations per second
+         */
+        public double getThroughput() {
+            return operations * 1e9 / Math.max(1L, elapsed);
+        }
+    }
+
+    /**
+     * Report the throughput for one thread up to the number of available processors.
+     *
+     * @param args an optional number of operations per run
+     * @throws InterruptedException if interrupted while waiting for the workload
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        final int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        System.out.println(String.format("%8s %14s %8s %11s %7s", "threads", "ops/s", "speedup", "mismatches",
+                    "errors"));
+        final List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+
+        double base = 0.0;
+        for (final int threads : threadCounts) {
+            final ExecutionStrategy executor = ExecutionStrategy.boundedPool(cores, 1024, 8);
+            try {
+                final WebACService service = WebACService.builder()
+                    .cache(new AuthorizationCache(10000L, 10, MINUTES))
+                    .resolutions(new AclResolutionCache(100000L, 10, MINUTES))
+                    .decisions(new DecisionCache(100000L, 10, MINUTES))
+                    .groups(new GroupCache(10000L, 10, MINUTES))
+                    .admins(new AdminCache(10000L, 10, MINUTES))
+                    .negatives(new NegativeCache(10000L, 10, MINUTES))
+                    .executor(executor)
+                    .build();
+                final StressHarness harness = new StressHarness(service, 32, 32, 64, 42L);
+                harness.run(threads, operations / 10);
+                final Result result = harness.run(threads, operations);
+                final long mismatches = result.getMismatches() + harness.verify();
+                if (base == 0.0) {
+                    base = result.getThroughput();
+                }
+                System.out.println(String.format("%8d %14.0f %8.2f %11d %7d", threads, result.getThroughput(),
+                            result.getThroughput() / base, mismatches, result.getErrors().size()));
+            } finally {
+                executor.close();
+            }
+        }
+    }
+}
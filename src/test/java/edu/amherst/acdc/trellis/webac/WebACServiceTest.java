@@ -15,8 +15,12 @@
  */
 package edu.amherst.acdc.trellis.webac;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static edu.amherst.acdc.trellis.api.Resource.TripleContext.USER_MANAGED;
 import static edu.amherst.acdc.trellis.vocabulary.RDF.type;
 import static org.junit.Assert.assertEquals;
@@ -24,8 +28,22 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import edu.amherst.acdc.trellis.api.Resource;
@@ -349,4 +367,637 @@ public class WebACServiceTest {
         assertEquals(4, testService.getAuthorizations(mockSession, publicAclIRI).count());
         assertEquals(3, testService.getAuthorizations(mockSession, privateAclIRI).count());
     }
+
+    @Test
+    public void testAuthorizationCache() {
+        final AuthorizationCache cache = new AuthorizationCache(10, 5, MINUTES);
+        final WebACService service = WebACService.builder()
+            .cache(cache)
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        assertEquals(4, service.getAuthorizations(mockSession, publicAclIRI).count());
+        assertEquals(4, service.getAuthorizations(mockSession, publicAclIRI).count());
+        assertTrue(service.canRead(mockSession, resourceIRI));
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(publicAclIRI));
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(authIRI1));
+        assertEquals(1L, cache.size());
+        assertEquals(2L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+
+        service.invalidate(authIRI1);
+        assertEquals(0L, cache.size());
+        assertEquals(4, service.getAuthorizations(mockSession, publicAclIRI).count());
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(publicAclIRI));
+
+        service.invalidate(rdf.createIRI("info:trellis/acl/public/new-auth"));
+        assertEquals(0L, cache.size());
+        assertEquals(3, service.getAuthorizations(mockSession, privateAclIRI).count());
+        service.invalidate(privateAclIRI);
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void testDisabledAuthorizationCache() {
+        final AuthorizationCache cache = new AuthorizationCache(0, 0, MINUTES);
+        final WebACService service = WebACService.builder()
+            .cache(cache)
+            .build();
+        service.bind(mockResourceService);
+
+        assertEquals(4, service.getAuthorizations(mockSession, publicAclIRI).count());
+        assertEquals(4, service.getAuthorizations(mockSession, publicAclIRI).count());
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(publicAclIRI));
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void testResolutionCache() {
+        final AclResolutionCache resolutions = new AclResolutionCache(10, 5, MINUTES);
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(resolutions)
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        assertEquals(of(publicAclIRI), service.findAclFor(mockSession, resourceIRI));
+        assertEquals(of(publicAclIRI), service.findAclFor(mockSession, resourceIRI));
+        assertEquals(of(mockChildResource), service.findAncestorWithAccessControl(mockSession, resourceIRI));
+        assertTrue(service.canRead(mockSession, resourceIRI));
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(resourceIRI));
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(childIRI));
+        assertEquals(2L, resolutions.size());
+
+        assertEquals(of(privateAclIRI), service.findAclFor(mockSession, parentIRI));
+        assertEquals(of(mockRootResource), service.findAncestorWithAccessControl(mockSession, parentIRI));
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(parentIRI));
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(rootIRI));
+        assertEquals(4L, resolutions.size());
+
+        service.invalidate(childIRI);
+        assertEquals(2L, resolutions.size());
+        service.invalidate(privateAclIRI);
+        assertEquals(0L, resolutions.size());
+        assertEquals(of(publicAclIRI), service.findAclFor(mockSession, resourceIRI));
+        verify(mockResourceService, times(3)).find(any(Session.class), eq(resourceIRI));
+    }
+
+    @Test
+    public void testDecisionCache() {
+        final DecisionCache decisions = new DecisionCache(10, 5, MINUTES);
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(decisions)
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        assertTrue(service.canRead(mockSession, resourceIRI));
+        assertTrue(service.canWrite(mockSession, resourceIRI));
+        assertFalse(service.canAppend(mockSession, resourceIRI));
+        verify(mockAgentService, times(1)).getGroups(eq(bseegerIRI));
+        assertEquals(1L, decisions.size());
+        assertEquals(2L, decisions.getHitCount());
+
+        when(mockSession.getAgent()).thenReturn(acoburnIRI);
+        assertFalse(service.canRead(mockSession, resourceIRI));
+        assertTrue(service.canAppend(mockSession, parentIRI));
+        assertEquals(3L, decisions.size());
+
+        service.invalidateAgent(acoburnIRI);
+        assertEquals(1L, decisions.size());
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        service.invalidate(authIRI3);
+        assertEquals(0L, decisions.size());
+        assertTrue(service.canWrite(mockSession, resourceIRI));
+        verify(mockAgentService, times(2)).getGroups(eq(bseegerIRI));
+    }
+
+    @Test
+    public void testInvalidateGroupWithoutGroupCache() {
+        final IRI groupIRI = rdf.createIRI("info:group/staff");
+        final DecisionCache decisions = new DecisionCache(10, 5, MINUTES);
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(decisions)
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockAuthResource4.stream(eq(USER_MANAGED))).thenAnswer(inv -> Stream.of(
+                rdf.createTriple(authIRI4, type, ACL.Authorization),
+                rdf.createTriple(authIRI4, ACL.agentGroup, groupIRI),
+                rdf.createTriple(authIRI4, ACL.accessTo, childIRI),
+                rdf.createTriple(authIRI4, ACL.mode, ACL.Append)));
+        when(mockAgentService.getGroups(eq(acoburnIRI))).thenAnswer(inv -> Stream.of(groupIRI));
+        when(mockSession.getAgent()).thenReturn(acoburnIRI);
+        assertTrue(service.canAppend(mockSession, resourceIRI));
+
+        when(mockAgentService.getGroups(eq(acoburnIRI))).thenAnswer(inv -> Stream.empty());
+        assertTrue(service.canAppend(mockSession, resourceIRI));
+        service.invalidateAgent(groupIRI);
+        assertFalse(service.canAppend(mockSession, resourceIRI));
+    }
+
+    @Test
+    public void testMetrics() {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(new DecisionCache(10, 5, MINUTES))
+            .metrics(metrics)
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        assertTrue(service.canRead(mockSession, resourceIRI));
+        assertEquals(1L, metrics.getDecisionLatency().getCount());
+        assertEquals(7L, metrics.getResourceLookups().getMax());
+        assertEquals(2L, metrics.getAncestorDepth().getMax());
+        assertEquals(4L, metrics.getAclSize().getMax());
+        assertEquals(1L, metrics.getGroupResolutionLatency().getCount());
+
+        assertTrue(service.canWrite(mockSession, resourceIRI));
+        assertFalse(service.canAppend(mockSession, resourceIRI));
+        assertEquals(3L, metrics.getDecisionLatency().getCount());
+        assertEquals(1L, metrics.getResourceLookups().getPercentile(50.0));
+        assertEquals(2L, metrics.getGrantCount());
+        assertEquals(1L, metrics.getDenyCount());
+        assertEquals(1L, metrics.getGrantCount(ACL.Read));
+        assertEquals(1L, metrics.getGrantCount(ACL.Write));
+        assertEquals(1L, metrics.getDenyCount(ACL.Append));
+        assertEquals(0L, metrics.getDenyCount(ACL.Read));
+        assertEquals(3L, metrics.getDecisionLatencyByAcl().get(publicAclIRI).getCount());
+    }
+
+    @Test
+    public void testRequestContext() {
+        final WebACService service = WebACService.builder()
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        try (final RequestContext context = service.openContext(mockSession)) {
+            try (final RequestContext nested = service.openContext(mockSession)) {
+                assertTrue(context == nested);
+            }
+            assertTrue(service.canRead(mockSession, resourceIRI));
+            assertTrue(service.canWrite(mockSession, resourceIRI));
+            assertFalse(service.canAppend(mockSession, resourceIRI));
+            assertTrue(service.findAclFor(mockSession, resourceIRI).isPresent());
+            verify(mockResourceService, times(1)).find(any(Session.class), eq(resourceIRI));
+            verify(mockResourceService, times(1)).find(any(Session.class), eq(childIRI));
+            verify(mockResourceService, times(1)).find(any(Session.class), eq(publicAclIRI));
+            verify(mockResourceService, times(1)).find(any(Session.class), eq(authIRI1));
+            verify(mockAgentService, times(1)).getGroups(eq(bseegerIRI));
+        }
+
+        assertTrue(service.canRead(mockSession, resourceIRI));
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(resourceIRI));
+        verify(mockAgentService, times(2)).getGroups(eq(bseegerIRI));
+    }
+
+    @Test
+    public void testRequestContextScope() throws Exception {
+        final WebACService service = WebACService.builder()
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        try (final RequestContext context = service.openContext(mockSession)) {
+            assertTrue(service.canRead(mockSession, resourceIRI));
+            verify(mockResourceService, times(1)).find(any(Session.class), eq(resourceIRI));
+
+            // Another thread with the same session does not share the context
+            final ExecutorService other = Executors.newSingleThreadExecutor();
+            try {
+                assertTrue(other.submit(() -> service.canRead(mockSession, resourceIRI)).get());
+            } finally {
+                other.shutdown();
+            }
+            verify(mockResourceService, times(2)).find(any(Session.class), eq(resourceIRI));
+
+            assertTrue(service.canRead(mockSession, resourceIRI));
+            verify(mockResourceService, times(2)).find(any(Session.class), eq(resourceIRI));
+
+            // A change reported to the service empties the memo
+            service.invalidate(authIRI1);
+            assertTrue(service.canRead(mockSession, resourceIRI));
+            verify(mockResourceService, times(3)).find(any(Session.class), eq(resourceIRI));
+            assertEquals(mockSession, context.getSession());
+        }
+    }
+
+    @Test
+    public void testGroupCache() {
+        final GroupCache groups = new GroupCache(10, 5, MINUTES);
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .groups(groups)
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        assertTrue(service.canRead(mockSession, resourceIRI));
+        assertTrue(service.canWrite(mockSession, resourceIRI));
+        assertTrue(service.canRead(mockSession, parentIRI));
+        verify(mockAgentService, times(1)).getGroups(eq(bseegerIRI));
+        assertEquals(1L, groups.size());
+        assertEquals(2L, groups.getHitCount());
+
+        service.invalidateAgent(bseegerIRI);
+        assertEquals(0L, groups.size());
+        assertTrue(service.canRead(mockSession, resourceIRI));
+        verify(mockAgentService, times(2)).getGroups(eq(bseegerIRI));
+    }
+
+    @Test
+    public void testAdminCache() {
+        final AdminCache admins = new AdminCache(10, 5, MINUTES);
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(new DecisionCache(10, 5, MINUTES))
+            .groups(new GroupCache(10, 5, MINUTES))
+            .admins(admins)
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(acoburnIRI);
+        assertFalse(service.canRead(mockSession, resourceIRI));
+        assertFalse(service.canWrite(mockSession, resourceIRI));
+        verify(mockAgentService, times(1)).isAdmin(eq(acoburnIRI));
+        assertEquals(1L, admins.getHitCount());
+        assertEquals(1L, admins.getMissCount());
+
+        when(mockAgentService.isAdmin(eq(acoburnIRI))).thenReturn(true);
+        assertFalse(service.canWrite(mockSession, resourceIRI));
+        service.invalidateAgent(acoburnIRI);
+        assertTrue(service.canWrite(mockSession, resourceIRI));
+        assertTrue(service.canControl(mockSession, resourceIRI));
+        verify(mockAgentService, times(2)).isAdmin(eq(acoburnIRI));
+    }
+
+    @Test
+    public void testRebind() {
+        final AuthorizationCache cache = new AuthorizationCache(10, 5, MINUTES);
+        final DecisionCache decisions = new DecisionCache(10, 5, MINUTES);
+        final WebACService service = WebACService.builder()
+            .cache(cache)
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(decisions)
+            .groups(new GroupCache(10, 5, MINUTES))
+            .admins(new AdminCache(10, 5, MINUTES))
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+        assertEquals(2L, service.getGeneration());
+        service.bind(mockResourceService);
+        assertEquals(2L, service.getGeneration());
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        assertTrue(service.canWrite(mockSession, resourceIRI));
+        assertEquals(1L, cache.size());
+        assertEquals(1L, decisions.size());
+
+        final ResourceService otherService = mock(ResourceService.class);
+        when(otherService.find(any(Session.class), any(IRI.class))).thenReturn(empty());
+        service.bind(otherService);
+        assertEquals(3L, service.getGeneration());
+        assertEquals(0L, cache.size());
+        assertEquals(0L, decisions.size());
+        assertFalse(service.canWrite(mockSession, resourceIRI));
+
+        service.unbind(mockResourceService);
+        assertEquals(3L, service.getGeneration());
+        service.unbind(otherService);
+        assertEquals(4L, service.getGeneration());
+        assertFalse(service.canRead(mockSession, resourceIRI));
+
+        service.bind(mockResourceService);
+        assertTrue(service.canWrite(mockSession, resourceIRI));
+    }
+
+    @Test
+    public void testAccessModes() {
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(new DecisionCache(10, 5, MINUTES))
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        for (final IRI agent : asList(acoburnIRI, bseegerIRI, agentIRI)) {
+            when(mockSession.getAgent()).thenReturn(agent);
+            for (final IRI identifier : asList(resourceIRI, childIRI, parentIRI, rootIRI)) {
+                final Set<AccessMode> modes = service.getAccessModes(mockSession, identifier);
+                assertEquals(service.canRead(mockSession, identifier), modes.contains(AccessMode.READ));
+                assertEquals(service.canWrite(mockSession, identifier), modes.contains(AccessMode.WRITE));
+                assertEquals(service.canAppend(mockSession, identifier), modes.contains(AccessMode.APPEND));
+                assertEquals(service.canControl(mockSession, identifier), modes.contains(AccessMode.CONTROL));
+            }
+        }
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        assertTrue(service.getAccessModes(mockSession, resourceIRI).contains(AccessMode.WRITE));
+        final IRI missingIRI = rdf.createIRI("info:trellis/missing");
+        when(mockResourceService.find(any(Session.class), eq(missingIRI))).thenReturn(empty());
+        assertTrue(service.getAccessModes(mockSession, missingIRI).isEmpty());
+
+        when(mockAgentService.isAdmin(eq(acoburnIRI))).thenReturn(true);
+        when(mockSession.getAgent()).thenReturn(acoburnIRI);
+        assertEquals(EnumSet.allOf(AccessMode.class), service.getAccessModes(mockSession, rootIRI));
+    }
+
+    @Test
+    public void testBatchAnyMatch() {
+        final WebACService service = WebACService.builder()
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        final IRI missingIRI = rdf.createIRI("info:trellis/parent/child/missing");
+        when(mockResourceService.find(any(Session.class), eq(missingIRI))).thenReturn(empty());
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        final Map<IRI, Boolean> results = service.anyMatch(mockSession,
+                asList(resourceIRI, childIRI, parentIRI, rootIRI, missingIRI), ACL.Write::equals);
+        assertEquals(asList(resourceIRI, childIRI, parentIRI, rootIRI, missingIRI),
+                new ArrayList<>(results.keySet()));
+        assertTrue(results.get(resourceIRI));
+        assertTrue(results.get(childIRI));
+        assertFalse(results.get(parentIRI));
+        assertFalse(results.get(rootIRI));
+        assertFalse(results.get(missingIRI));
+
+        verify(mockAgentService, times(1)).getGroups(eq(bseegerIRI));
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(publicAclIRI));
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(authIRI1));
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(childIRI));
+    }
+
+    @Test
+    public void testBatchPerIdentifier() {
+        final WebACService service = WebACService.builder()
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        final Map<IRI, Predicate<IRI>> checks = new LinkedHashMap<>();
+        checks.put(resourceIRI, ACL.Write::equals);
+        checks.put(childIRI, ACL.Append::equals);
+        checks.put(parentIRI, ACL.Read::equals);
+        final Map<IRI, Boolean> results = service.anyMatch(mockSession, checks);
+        assertEquals(asList(resourceIRI, childIRI, parentIRI), new ArrayList<>(results.keySet()));
+        verify(mockAgentService, times(1)).getGroups(eq(bseegerIRI));
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(publicAclIRI));
+        for (final Map.Entry<IRI, Predicate<IRI>> check : checks.entrySet()) {
+            assertEquals(testService.anyMatch(mockSession, check.getKey(), check.getValue()),
+                    results.get(check.getKey()));
+        }
+    }
+
+    @Test
+    public void testBatchAdmin() {
+        when(mockAgentService.isAdmin(eq(acoburnIRI))).thenReturn(true);
+        when(mockSession.getAgent()).thenReturn(acoburnIRI);
+        final Map<IRI, Boolean> results = ((WebACService) testService).anyMatch(mockSession,
+                asList(resourceIRI, rootIRI), ACL.Control::equals);
+        assertTrue(results.get(resourceIRI));
+        assertTrue(results.get(rootIRI));
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+        try (final ExecutionStrategy executor = ExecutionStrategy.boundedPool(4, 100, 2)) {
+            final WebACService service = WebACService.builder()
+                .cache(new AuthorizationCache(10, 5, MINUTES))
+                .resolutions(new AclResolutionCache(10, 5, MINUTES))
+                .decisions(new DecisionCache(10, 5, MINUTES))
+                .executor(executor)
+                .build();
+            service.bind(mockResourceService);
+            service.bind(mockAgentService);
+
+            assertEquals(of(publicAclIRI), service.findAclForAsync(mockSession, resourceIRI).toCompletableFuture()
+                    .get());
+            assertEquals(of(privateAclIRI), service.findAclForAsync(mockSession, parentIRI).toCompletableFuture()
+                    .get());
+            assertEquals(4L, service.getAuthorizationsAsync(mockSession, publicAclIRI).toCompletableFuture().get()
+                    .count());
+
+            for (final IRI agent : asList(acoburnIRI, bseegerIRI, agentIRI)) {
+                when(mockSession.getAgent()).thenReturn(agent);
+                for (final IRI identifier : asList(resourceIRI, childIRI, parentIRI, rootIRI)) {
+                    assertEquals(testService.canRead(mockSession, identifier), service.anyMatchAsync(mockSession,
+                                identifier, ACL.Read::equals).toCompletableFuture().get());
+                    assertEquals(testService.canAppend(mockSession, identifier), service.anyMatchAsync(mockSession,
+                                identifier, ACL.Append::equals).toCompletableFuture().get());
+                    assertEquals(testService.canControl(mockSession, identifier), service.anyMatchAsync(mockSession,
+                                identifier, ACL.Control::equals).toCompletableFuture().get());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncShortCircuit() throws Exception {
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(new DecisionCache(10, 5, MINUTES))
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        assertTrue(service.anyMatchAsync(mockSession, resourceIRI, ACL.Read::equals).toCompletableFuture().get());
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(authIRI1));
+        verify(mockResourceService, times(0)).find(any(Session.class), eq(authIRI4));
+
+        assertFalse(service.anyMatchAsync(mockSession, resourceIRI, ACL.Append::equals).toCompletableFuture().get());
+        assertTrue(service.anyMatchAsync(mockSession, resourceIRI, ACL.Write::equals).toCompletableFuture().get());
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(authIRI4));
+        verify(mockAgentService, times(2)).getGroups(eq(bseegerIRI));
+    }
+
+    @Test
+    public void testAsyncShortCircuitUncached() throws Exception {
+        final WebACService service = WebACService.builder()
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(new DecisionCache(10, 5, MINUTES))
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        assertTrue(service.anyMatchAsync(mockSession, resourceIRI, ACL.Read::equals).toCompletableFuture().get());
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(authIRI1));
+        verify(mockResourceService, times(0)).find(any(Session.class), eq(authIRI2));
+
+        assertFalse(service.anyMatchAsync(mockSession, resourceIRI, ACL.Append::equals).toCompletableFuture().get());
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(authIRI4));
+        assertTrue(service.anyMatchAsync(mockSession, resourceIRI, ACL.Write::equals).toCompletableFuture().get());
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(authIRI4));
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(authIRI3));
+    }
+
+    @Test
+    public void testAsyncBackgroundFill() throws Exception {
+        // The background task is the only caller that loads through the cache
+        final CountDownLatch loaded = new CountDownLatch(1);
+        final AuthorizationCache cache = new AuthorizationCache(10, 5, MINUTES) {
+            @Override
+            CompiledAcl get(final IRI identifier, final Function<IRI, CompiledAcl> loader, final long generation) {
+                final CompiledAcl acl = super.get(identifier, loader, generation);
+                loaded.countDown();
+                return acl;
+            }
+        };
+        try (final ExecutionStrategy executor = ExecutionStrategy.boundedPool(2, 10, 1)) {
+            final WebACService service = WebACService.builder()
+                .cache(cache)
+                .resolutions(new AclResolutionCache(10, 5, MINUTES))
+                .decisions(new DecisionCache(10, 5, MINUTES))
+                .executor(executor)
+                .build();
+            service.bind(mockResourceService);
+            service.bind(mockAgentService);
+
+            when(mockSession.getAgent()).thenReturn(bseegerIRI);
+            assertTrue(service.anyMatchAsync(mockSession, resourceIRI, ACL.Read::equals).toCompletableFuture()
+                    .get());
+            assertTrue(loaded.await(5L, SECONDS));
+            assertEquals(1L, cache.size());
+        }
+    }
+
+    @Test
+    public void testShortCircuit() {
+        final WebACService service = WebACService.builder()
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .decisions(new DecisionCache(10, 5, MINUTES))
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        when(mockSession.getAgent()).thenReturn(agentIRI);
+        assertTrue(service.canWrite(mockSession, childIRI));
+        verify(mockResourceService, times(0)).find(any(Session.class), eq(authIRI4));
+        assertFalse(service.canAppend(mockSession, childIRI));
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(authIRI4));
+        assertEquals(0L, service.getAuthorizations(mockSession, privateAclIRI)
+                .filter(auth -> auth.getIdentifier().equals(authIRI7)).count());
+
+        for (final IRI agent : asList(acoburnIRI, bseegerIRI, agentIRI)) {
+            when(mockSession.getAgent()).thenReturn(agent);
+            for (final IRI identifier : asList(resourceIRI, childIRI, parentIRI, rootIRI)) {
+                assertEquals(testService.canRead(mockSession, identifier), service.canRead(mockSession, identifier));
+                assertEquals(testService.canWrite(mockSession, identifier),
+                        service.canWrite(mockSession, identifier));
+                assertEquals(testService.canAppend(mockSession, identifier),
+                        service.canAppend(mockSession, identifier));
+                assertEquals(testService.canControl(mockSession, identifier),
+                        service.canControl(mockSession, identifier));
+            }
+        }
+    }
+
+    @Test
+    public void testUncachedOnCallingThread() {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        when(mockResourceService.find(any(Session.class), eq(authIRI1))).thenAnswer(inv -> {
+            threads.add(Thread.currentThread());
+            return of(mockAuthResource1);
+        });
+        try (final ExecutionStrategy executor = ExecutionStrategy.boundedPool(4, 100, 8)) {
+            final WebACService service = WebACService.builder()
+                .executor(executor)
+                .build();
+            service.bind(mockResourceService);
+            service.bind(mockAgentService);
+
+            when(mockSession.getAgent()).thenReturn(bseegerIRI);
+            assertTrue(service.canRead(mockSession, resourceIRI));
+            assertEquals(singleton(Thread.currentThread()), threads);
+            assertEquals(1L, executor.getTaskCount());
+            verify(mockResourceService, times(0)).find(any(Session.class), eq(authIRI2));
+        }
+    }
+
+    @Test
+    public void testNoNegativeCacheByDefault() {
+        final WebACService service = new WebACService();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        final IRI missingIRI = rdf.createIRI("info:trellis/parent/missing");
+        when(mockResourceService.find(any(Session.class), eq(missingIRI))).thenReturn(empty());
+        assertFalse(service.canRead(mockSession, missingIRI));
+        assertFalse(service.canRead(mockSession, missingIRI));
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(missingIRI));
+    }
+
+    @Test
+    public void testDefaultOnCallingThread() {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        when(mockResourceService.find(any(Session.class), eq(authIRI1))).thenAnswer(inv -> {
+            threads.add(Thread.currentThread());
+            return of(mockAuthResource1);
+        });
+
+        when(mockSession.getAgent()).thenReturn(bseegerIRI);
+        assertTrue(testService.canRead(mockSession, resourceIRI));
+        assertEquals(singleton(Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void testNegativeCache() {
+        final NegativeCache negatives = new NegativeCache(10, 5, MINUTES);
+        final WebACService service = WebACService.builder()
+            .cache(new AuthorizationCache(10, 5, MINUTES))
+            .resolutions(new AclResolutionCache(10, 5, MINUTES))
+            .negatives(negatives)
+            .build();
+        service.bind(mockResourceService);
+        service.bind(mockAgentService);
+
+        final IRI missingIRI = rdf.createIRI("info:trellis/parent/missing");
+        when(mockResourceService.find(any(Session.class), eq(missingIRI))).thenReturn(empty());
+        assertFalse(service.canRead(mockSession, missingIRI));
+        assertFalse(service.canRead(mockSession, missingIRI));
+        assertFalse(service.anyMatch(mockSession, asList(missingIRI), ACL.Read::equals).get(missingIRI));
+        verify(mockResourceService, times(1)).find(any(Session.class), eq(missingIRI));
+
+        service.invalidate(parentIRI);
+        assertFalse(service.canRead(mockSession, missingIRI));
+        verify(mockResourceService, times(2)).find(any(Session.class), eq(missingIRI));
+
+        when(mockSession.getAgent()).thenReturn(acoburnIRI);
+        assertFalse(service.canRead(mockSession, childIRI));
+        final long hits = negatives.getHitCount();
+        assertFalse(service.canWrite(mockSession, childIRI));
+        assertEquals(hits + 1, negatives.getHitCount());
+        assertEquals(2L, negatives.size());
+
+        service.invalidate(authIRI2);
+        assertEquals(1L, negatives.size());
+        service.invalidateAgent(acoburnIRI);
+        assertFalse(service.canRead(mockSession, childIRI));
+        assertTrue(service.canAppend(mockSession, rootIRI));
+    }
 }